@@ -0,0 +1,254 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HikeCursorMapper and ObservationCursorMapper against the per-row probing code they
+ * replaced (kept below as legacyHike / legacyObservation): same rows for the current
+ * schema, for legacy column names and for missing columns. The large-cursor timing
+ * goes to logcat under this class name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CursorMapperParityTest {
+
+    private static final String TAG = "CursorMapperParityTest";
+    private static final int BENCH_ROWS = 10_000;
+    private static final int REPEATS = 5;
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("cursor-mapper-test.db");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void databaseRowsMatchLegacyMapping() {
+        int first = (int) db.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        db.addHike(new Hike("Catbells", "Keswick", "02/06/2024", false, 5.5, "Easy", "", "Rain", 2));
+        db.addObservation(TestDatabases.observation(first, "Red kite"));
+        db.addObservation(new Observation(first, "Ravens", "01/06/2024 11:00", "pair on the crag"));
+
+        Cursor hikes = db.getReadableDatabase().rawQuery("SELECT * FROM hikes", null);
+        try {
+            assertHikesMatch(hikes);
+        } finally {
+            hikes.close();
+        }
+        Cursor observations = db.getReadableDatabase().rawQuery("SELECT * FROM observations", null);
+        try {
+            assertObservationsMatch(observations);
+        } finally {
+            observations.close();
+        }
+    }
+
+    @Test
+    public void legacyHikeColumnsMatchLegacyMapping() {
+        // parking_available wins over parking, whatever their values
+        MatrixCursor c = new MatrixCursor(new String[]{"id", "name", "location", "date", "parking_available",
+                "parking", "length", "difficulty", "description", "weather", "group_size"});
+        c.addRow(new Object[]{1, "Helvellyn", "Glenridding", "01/06/2024", 1, 0, 12.5, "Hard", "Striding Edge", "Sunny", 4});
+        c.addRow(new Object[]{2, "Catbells", "Keswick", "02/06/2024", 0, 1, 5.5, "Easy", "", "Rain", 2});
+        c.addRow(new Object[]{3, null, null, null, null, null, null, null, null, null, null});
+        assertHikesMatch(c);
+    }
+
+    @Test
+    public void missingHikeColumnsFallBackLikeLegacyMapping() {
+        MatrixCursor onlyName = new MatrixCursor(new String[]{"id", "name"});
+        onlyName.addRow(new Object[]{7, "Skiddaw"});
+        assertHikesMatch(onlyName);
+
+        MatrixCursor parkingOnly = new MatrixCursor(new String[]{"parking", "length"});
+        parkingOnly.addRow(new Object[]{1, 3.25});
+        parkingOnly.addRow(new Object[]{2, 0});
+        assertHikesMatch(parkingOnly);
+
+        assertHikesMatch(new MatrixCursor(new String[]{"unrelated"}, 0));
+    }
+
+    @Test
+    public void legacyObservationColumnsMatchLegacyMapping() {
+        MatrixCursor hikeAndTimestamp = new MatrixCursor(new String[]{"id", "hike", "observation_text", "timestamp",
+                "obs_time", "notes"});
+        hikeAndTimestamp.addRow(new Object[]{1, 4, "Red kite", "01/06/2024 10:30", "ignored", "never read back"});
+        hikeAndTimestamp.addRow(new Object[]{2, 4, null, null, "ignored", null});
+        assertObservationsMatch(hikeAndTimestamp);
+
+        // hike_id and time win over their legacy variants when both exist
+        MatrixCursor both = new MatrixCursor(new String[]{"id", "hike_id", "hike", "observation_text", "obs_time",
+                "time", "comments", "notes"});
+        both.addRow(new Object[]{3, 5, 9, "Ravens", "ignored", "02/06/2024 08:00", "pair", "unused"});
+        assertObservationsMatch(both);
+
+        MatrixCursor obsTimeOnly = new MatrixCursor(new String[]{"observation_text", "obs_time"});
+        obsTimeOnly.addRow(new Object[]{"Heron", "03/06/2024 07:15"});
+        assertObservationsMatch(obsTimeOnly);
+
+        assertObservationsMatch(new MatrixCursor(new String[]{"unrelated"}, 0));
+    }
+
+    @Test
+    public void mapperAgainstProbingOnLargeCursor() {
+        MatrixCursor hikes = syntheticHikes();
+        long legacy = Long.MAX_VALUE;
+        long mapped = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<Hike> legacyRows = new ArrayList<>(BENCH_ROWS);
+            hikes.moveToPosition(-1);
+            while (hikes.moveToNext()) legacyRows.add(legacyHike(hikes));
+            legacy = Math.min(legacy, SystemClock.elapsedRealtimeNanos() - start);
+
+            start = SystemClock.elapsedRealtimeNanos();
+            List<Hike> mappedRows = new ArrayList<>(BENCH_ROWS);
+            hikes.moveToPosition(-1);
+            HikeCursorMapper mapper = new HikeCursorMapper(hikes);
+            while (hikes.moveToNext()) mappedRows.add(mapper.map(hikes));
+            mapped = Math.min(mapped, SystemClock.elapsedRealtimeNanos() - start);
+
+            assertEquals(BENCH_ROWS, mappedRows.size());
+            assertSameHike("row 0", legacyRows.get(0), mappedRows.get(0));
+            assertSameHike("last row", legacyRows.get(BENCH_ROWS - 1), mappedRows.get(BENCH_ROWS - 1));
+        }
+        Log.i(TAG, BENCH_ROWS + " hikes: probing " + legacy / 1_000 + " us, mapper " + mapped / 1_000 + " us");
+    }
+
+    private static MatrixCursor syntheticHikes() {
+        // legacy layout, so the probing path pays for its parking_available fallback too
+        MatrixCursor c = new MatrixCursor(new String[]{"id", "name", "location", "date", "parking_available",
+                "length", "difficulty", "description", "weather", "group_size"}, BENCH_ROWS);
+        for (int i = 0; i < BENCH_ROWS; i++) {
+            c.addRow(new Object[]{i + 1, "Hike " + i, "Lake District", (1 + i % 28) + "/6/2024", i % 2,
+                    i / 10.0, "Medium", "Ridge walk", "Sunny", 1 + i % 8});
+        }
+        return c;
+    }
+
+    private static void assertHikesMatch(Cursor c) {
+        int row = 0;
+        c.moveToPosition(-1);
+        HikeCursorMapper mapper = new HikeCursorMapper(c);
+        while (c.moveToNext()) {
+            assertSameHike("row " + row++, legacyHike(c), mapper.map(c));
+        }
+        assertEquals(c.getCount(), row);
+    }
+
+    private static void assertObservationsMatch(Cursor c) {
+        int row = 0;
+        c.moveToPosition(-1);
+        ObservationCursorMapper mapper = new ObservationCursorMapper(c);
+        while (c.moveToNext()) {
+            assertSameObservation("row " + row++, legacyObservation(c), mapper.map(c));
+        }
+        assertEquals(c.getCount(), row);
+    }
+
+    private static void assertSameHike(String row, Hike expected, Hike actual) {
+        assertEquals(row, expected.getId(), actual.getId());
+        assertEquals(row, expected.getName(), actual.getName());
+        assertEquals(row, expected.getLocation(), actual.getLocation());
+        assertEquals(row, expected.getDate(), actual.getDate());
+        assertEquals(row, expected.isParking(), actual.isParking());
+        assertEquals(row, expected.getLength(), actual.getLength(), 0);
+        assertEquals(row, expected.getDifficulty(), actual.getDifficulty());
+        assertEquals(row, expected.getDescription(), actual.getDescription());
+        assertEquals(row, expected.getWeather(), actual.getWeather());
+        assertEquals(row, expected.getGroupSize(), actual.getGroupSize());
+    }
+
+    private static void assertSameObservation(String row, Observation expected, Observation actual) {
+        assertEquals(row, expected.getId(), actual.getId());
+        assertEquals(row, expected.getHikeId(), actual.getHikeId());
+        assertEquals(row, expected.getObservationText(), actual.getObservationText());
+        assertEquals(row, expected.getTime(), actual.getTime());
+        assertEquals(row, expected.getComments(), actual.getComments());
+    }
+
+    // ------------------ Probing code the mappers replaced ------------------
+
+    private static Hike legacyHike(Cursor dataCursor) {
+        Hike hikeData = new Hike();
+        try { hikeData.setId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("id"))); } catch (Exception e) { hikeData.setId(0); }
+        try { hikeData.setName(dataCursor.getString(dataCursor.getColumnIndexOrThrow("name"))); } catch (Exception e) { hikeData.setName(""); }
+        try { hikeData.setLocation(dataCursor.getString(dataCursor.getColumnIndexOrThrow("location"))); } catch (Exception e) { hikeData.setLocation(""); }
+        try { hikeData.setDate(dataCursor.getString(dataCursor.getColumnIndexOrThrow("date"))); } catch (Exception e) { hikeData.setDate(""); }
+
+        try {
+            int val = -1;
+            if (columnIndexExists(dataCursor, "parking_available")) {
+                val = dataCursor.getInt(dataCursor.getColumnIndexOrThrow("parking_available"));
+            } else if (columnIndexExists(dataCursor, "parking")) {
+                val = dataCursor.getInt(dataCursor.getColumnIndexOrThrow("parking"));
+            }
+            hikeData.setParking(val == 1);
+        } catch (Exception e) {
+            hikeData.setParking(false);
+        }
+
+        try { hikeData.setLength(dataCursor.getDouble(dataCursor.getColumnIndexOrThrow("length"))); } catch (Exception e) { hikeData.setLength(0); }
+        try { hikeData.setDifficulty(dataCursor.getString(dataCursor.getColumnIndexOrThrow("difficulty"))); } catch (Exception e) { hikeData.setDifficulty("Easy"); }
+        try { hikeData.setDescription(dataCursor.getString(dataCursor.getColumnIndexOrThrow("description"))); } catch (Exception e) { hikeData.setDescription(""); }
+        try { hikeData.setWeather(dataCursor.getString(dataCursor.getColumnIndexOrThrow("weather"))); } catch (Exception e) { hikeData.setWeather(""); }
+        try { hikeData.setGroupSize(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("group_size"))); } catch (Exception e) { hikeData.setGroupSize(0); }
+        return hikeData;
+    }
+
+    private static boolean columnIndexExists(Cursor c, String colName) {
+        try {
+            c.getColumnIndexOrThrow(colName);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Observation legacyObservation(Cursor dataCursor) {
+        Observation obsData = new Observation();
+        try { obsData.setId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("id"))); } catch (Exception e) { obsData.setId(0); }
+        try { obsData.setHikeId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("hike_id"))); } catch (Exception e) {
+            try { obsData.setHikeId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("hike"))); } catch (Exception ex) { obsData.setHikeId(0); }
+        }
+        try { obsData.setObservationText(dataCursor.getString(dataCursor.getColumnIndexOrThrow("observation_text"))); } catch (Exception e) { obsData.setObservationText(""); }
+
+        String timeVal = "";
+        try {
+            if (columnIndexExists(dataCursor, "time")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("time"));
+            else if (columnIndexExists(dataCursor, "timestamp")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("timestamp"));
+            else if (columnIndexExists(dataCursor, "obs_time")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("obs_time"));
+        } catch (Exception e) {
+            timeVal = "";
+        }
+        obsData.setTime(timeVal);
+
+        try { obsData.setComments(dataCursor.getString(dataCursor.getColumnIndexOrThrow("comments"))); } catch (Exception e) {
+            obsData.setComments("");
+        }
+        return obsData;
+    }
+}
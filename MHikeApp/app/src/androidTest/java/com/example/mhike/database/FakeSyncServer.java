@@ -0,0 +1,133 @@
+package com.example.mhike.database;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory sync server speaking SyncTransport's JSON, shared by several test devices.
+ * A push based on an out-of-date version is answered with a conflict carrying the
+ * server copy. failAfter makes a call fail once the given number of calls succeeded,
+ * like a dropped connection in the middle of a sync.
+ */
+final class FakeSyncServer implements SyncTransport {
+
+    private static final class Row {
+        long version;
+        boolean deleted;
+        JSONObject data;
+    }
+
+    // table -> server id -> row
+    private final Map<String, Map<String, Row>> tables = new HashMap<>();
+    private long versionCounter;
+
+    private int callsBeforeFailure = -1;
+    int pushCalls;
+    int pushedRows;
+    final List<Long> pullSince = new ArrayList<>();
+
+    // the call after calls more successful ones throws; -1 never fails
+    void failAfter(int calls) {
+        callsBeforeFailure = calls;
+    }
+
+    @Override
+    public synchronized JSONObject push(JSONObject request) throws IOException {
+        maybeFail();
+        pushCalls++;
+        try {
+            Map<String, Row> rows = table(request.getString("table"));
+            JSONArray in = request.getJSONArray("rows");
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < in.length(); i++) {
+                JSONObject change = in.getJSONObject(i);
+                String id = change.getString("id");
+                Row row = rows.get(id);
+                if (row != null && row.version != change.getLong("base_version")) {
+                    results.put(toJson(id, row).put("status", "conflict"));
+                    continue;
+                }
+                if (row == null) {
+                    row = new Row();
+                    rows.put(id, row);
+                }
+                row.version = ++versionCounter;
+                row.deleted = change.optBoolean("deleted");
+                row.data = change.optJSONObject("data");
+                pushedRows++;
+                results.put(new JSONObject().put("id", id).put("status", "ok").put("version", row.version));
+            }
+            return new JSONObject().put("results", results);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public synchronized JSONObject pull(String table, long since, int limit) throws IOException {
+        maybeFail();
+        pullSince.add(since);
+        try {
+            TreeMap<Long, JSONObject> newer = new TreeMap<>();
+            for (Map.Entry<String, Row> entry : table(table).entrySet()) {
+                if (entry.getValue().version > since) {
+                    newer.put(entry.getValue().version, toJson(entry.getKey(), entry.getValue()));
+                }
+            }
+            JSONArray rows = new JSONArray();
+            for (JSONObject row : newer.values()) {
+                if (rows.length() == limit) break;
+                rows.put(row);
+            }
+            return new JSONObject().put("rows", rows).put("has_more", newer.size() > limit);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    synchronized int liveRows(String table) {
+        int n = 0;
+        for (Row row : table(table).values()) if (!row.deleted) n++;
+        return n;
+    }
+
+    // data of the live rows of table, by server id
+    synchronized Map<String, JSONObject> rows(String table) {
+        Map<String, JSONObject> data = new HashMap<>();
+        for (Map.Entry<String, Row> entry : table(table).entrySet()) {
+            if (!entry.getValue().deleted) data.put(entry.getKey(), entry.getValue().data);
+        }
+        return data;
+    }
+
+    private Map<String, Row> table(String name) {
+        Map<String, Row> rows = tables.get(name);
+        if (rows == null) {
+            rows = new HashMap<>();
+            tables.put(name, rows);
+        }
+        return rows;
+    }
+
+    private void maybeFail() throws IOException {
+        if (callsBeforeFailure == 0) {
+            callsBeforeFailure = -1;
+            throw new IOException("connection dropped");
+        }
+        if (callsBeforeFailure > 0) callsBeforeFailure--;
+    }
+
+    private static JSONObject toJson(String id, Row row) throws JSONException {
+        JSONObject obj = new JSONObject().put("id", id).put("version", row.version).put("deleted", row.deleted);
+        if (!row.deleted) obj.put("data", row.data);
+        return obj;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.mhike.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Full and incremental snapshots restored into another database reproduce the source.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeBackupTest {
+
+    private DatabaseHelper source;
+    private DatabaseHelper target;
+
+    @Before
+    public void setUp() {
+        source = TestDatabases.open("backup-source-test.db");
+        target = TestDatabases.open("backup-target-test.db");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(source);
+        TestDatabases.delete(target);
+    }
+
+    @Test
+    public void fullThenIncrementalRestoreMatchesTheSource() {
+        int kept = addHikeWithObservations("Helvellyn", "01/06/2024", 3);
+        int deleted = addHikeWithObservations("Catbells", "02/06/2024", 2);
+        ByteArrayOutputStream fullOut = new ByteArrayOutputStream();
+        HikeBackup.Result full = new HikeBackup().backup(source, fullOut, 0, true);
+        assertNotNull(full);
+        assertEquals(2, full.getHikes());
+        assertEquals(5, full.getObservations());
+
+        assertNotNull(new HikeBackup().restore(target, new ByteArrayInputStream(fullOut.toByteArray())));
+        assertEquals(contents(source), contents(target));
+
+        // edit, delete and add after the full snapshot
+        Hike edit = source.getHike(kept);
+        edit.setName("Helvellyn via Striding Edge");
+        assertEquals(1, source.updateHike(edit));
+        assertTrue(source.deleteHike(deleted) > 0);
+        addHikeWithObservations("Skiddaw", "03/06/2024", 1);
+        source.deleteObservation(source.getObservationsByHike(kept).get(0).getId());
+
+        ByteArrayOutputStream incrementalOut = new ByteArrayOutputStream();
+        HikeBackup.Result incremental = new HikeBackup().backup(source, incrementalOut, full.getUntilSeq(), true);
+        assertNotNull(incremental);
+        assertEquals(2, incremental.getHikes());
+        assertTrue(incremental.getDeletions() >= 2);
+
+        assertNotNull(new HikeBackup().restore(target, new ByteArrayInputStream(incrementalOut.toByteArray())));
+        assertEquals(contents(source), contents(target));
+        assertNull(target.getHike(deleted));
+    }
+
+    @Test
+    public void restoringBringsBackALocallyDeletedHike() {
+        int id = addHikeWithObservations("Scafell Pike", "04/06/2024", 1);
+        byte[] snapshot = backupBytes(0);
+
+        assertTrue(source.deleteHike(id) > 0);
+        assertNull(source.getHike(id));
+
+        assertNotNull(new HikeBackup().restore(source, new ByteArrayInputStream(snapshot)));
+        assertNotNull(source.getHike(id));
+        assertEquals(1, source.getObservationsByHike(id).size());
+    }
+
+    @Test
+    public void truncatedSnapshotChangesNothing() {
+        addHikeWithObservations("Blencathra", "05/06/2024", 2);
+        byte[] snapshot = backupBytes(0);
+        byte[] truncated = new byte[snapshot.length / 2];
+        System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+
+        target.addHike(TestDatabases.hike("Grisedale Pike", "06/06/2024"));
+        String before = contents(target);
+        assertNull(new HikeBackup().restore(target, new ByteArrayInputStream(truncated)));
+        assertEquals(before, contents(target));
+    }
+
+    private int addHikeWithObservations(String name, String date, int observations) {
+        int id = (int) source.addHike(TestDatabases.hike(name, date));
+        for (int i = 0; i < observations; i++) {
+            source.addObservation(TestDatabases.observation(id, name + " sighting " + i));
+        }
+        return id;
+    }
+
+    private byte[] backupBytes(long sinceSeq) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertNotNull(new HikeBackup().backup(source, out, sinceSeq, true));
+        return out.toByteArray();
+    }
+
+    // every live hike and its observations, in id order
+    private static String contents(DatabaseHelper db) {
+        db.getCache().clear();
+        StringBuilder text = new StringBuilder();
+        List<Hike> hikes = new ArrayList<>(db.getAllHikes());
+        hikes.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        for (Hike hike : hikes) {
+            text.append(hike.getId()).append('|').append(hike.getName()).append('|').append(hike.getDate())
+                    .append('|').append(hike.getLength()).append('\n');
+            List<Observation> observations = new ArrayList<>(db.getObservationsByHike(hike.getId()));
+            observations.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+            for (Observation obs : observations) {
+                text.append("  ").append(obs.getId()).append('|').append(obs.getObservationText()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
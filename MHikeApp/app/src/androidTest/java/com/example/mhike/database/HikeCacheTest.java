@@ -0,0 +1,90 @@
+package com.example.mhike.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * HikeCache in front of DatabaseHelper: hits are served without SQLite, and callers
+ * only ever get copies of the cached rows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeCacheTest {
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("hike-cache-test.db");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void cachedHikeIsServedWithoutSqlite() {
+        int id = (int) db.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        db.getCache().clear();
+
+        assertNotNull(db.getHike(id));
+        int misses = db.getCache().hikeMissCount();
+        int hits = db.getCache().hikeHitCount();
+
+        // removed behind the cache's back: only a cache hit can still return it
+        db.getWritableDatabase().execSQL("DELETE FROM hikes WHERE id = " + id);
+        Hike cached = db.getHike(id);
+
+        assertNotNull(cached);
+        assertEquals("Helvellyn", cached.getName());
+        assertEquals(hits + 1, db.getCache().hikeHitCount());
+        assertEquals(misses, db.getCache().hikeMissCount());
+    }
+
+    @Test
+    public void cachedObservationsAreServedWithoutSqlite() {
+        int hikeId = (int) db.addHike(TestDatabases.hike("Scafell Pike", "02/06/2024"));
+        db.addObservation(TestDatabases.observation(hikeId, "Red kite"));
+        assertEquals(1, db.getObservationsByHike(hikeId).size());
+        int hits = db.getCache().observationHitCount();
+
+        db.getWritableDatabase().execSQL("DELETE FROM observations WHERE hike_id = " + hikeId);
+
+        assertEquals(1, db.getObservationsByHike(hikeId).size());
+        assertEquals(hits + 1, db.getCache().observationHitCount());
+    }
+
+    @Test
+    public void editingReturnedModelsDoesNotChangeTheCache() {
+        int id = (int) db.addHike(TestDatabases.hike("Skiddaw", "03/06/2024"));
+        db.addObservation(TestDatabases.observation(id, "Buzzard"));
+
+        db.getHike(id).setName("edited without a write");
+        List<Observation> observations = db.getObservationsByHike(id);
+        observations.get(0).setObservationText("edited without a write");
+
+        assertEquals("Skiddaw", db.getHike(id).getName());
+        assertEquals("Buzzard", db.getObservationsByHike(id).get(0).getObservationText());
+    }
+
+    @Test
+    public void writesInvalidateTheCache() {
+        int id = (int) db.addHike(TestDatabases.hike("Blencathra", "04/06/2024"));
+        Hike edit = db.getHike(id);
+        edit.setName("Saddleback");
+        assertEquals(1, db.updateHike(edit));
+
+        assertEquals("Saddleback", db.getHike(id).getName());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.mhike.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * An export reads one snapshot: hikes written while it runs are neither skipped nor
+ * exported twice, even once the cursor has to refill its window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeExporterTest {
+
+    // enough rows to need several cursor windows
+    private static final int HIKES = 20_000;
+    private static final int CHANGED = 500;
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("exporter-test.db");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void writesDuringExportDoNotShiftRows() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 15; i++) description.append("ridge walk ");
+        List<Hike> hikes = new ArrayList<>(HIKES);
+        for (int i = 0; i < HIKES; i++) {
+            hikes.add(new Hike("Hike " + i, "Lake District", (1 + i % 28) + "/6/2024", false, 5,
+                    "Easy", description.toString(), "Sunny", 2));
+        }
+        assertEquals(HIKES, db.addHikes(hikes));
+
+        boolean[] changed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HikeExporter.Result result = new HikeExporter().export(db, out, HikeExporter.Format.CSV, rows -> {
+            if (changed[0]) return;
+            changed[0] = true;
+            // rows ahead of the export are removed and others appended
+            db.getWritableDatabase().execSQL("DELETE FROM hikes WHERE id > " + (HIKES - CHANGED));
+            List<Hike> more = new ArrayList<>(CHANGED);
+            for (int i = 0; i < CHANGED; i++) more.add(TestDatabases.hike("Late " + i, "01/07/2024"));
+            assertEquals(CHANGED, db.addHikes(more));
+        });
+
+        assertTrue(changed[0]);
+        assertNotNull(result);
+        assertEquals(HIKES, result.getHikes());
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(HIKES + 1, lines.length);
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 1; i < lines.length; i++) {
+            int id = Integer.parseInt(lines[i].substring(0, lines[i].indexOf(',')));
+            assertTrue("exported twice: " + id, ids.add(id));
+            assertTrue("not in the snapshot: " + id, id >= 1 && id <= HIKES);
+        }
+    }
+}
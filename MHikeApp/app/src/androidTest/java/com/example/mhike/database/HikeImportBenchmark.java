@@ -0,0 +1,102 @@
+package com.example.mhike.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * A 100k-hike CSV imported through HikeRepository, one writer task per chunk, while
+ * single saves keep arriving on the writer. The import time and the slowest of those
+ * saves go to logcat under this class name; the test fails only if rows go missing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeImportBenchmark {
+
+    private static final String TAG = "HikeImportBenchmark";
+    private static final int HIKES = 100_000;
+    // every tenth hike carries an observation
+    private static final int OBSERVATION_EVERY = 10;
+    private static final long SAVE_INTERVAL_MS = 50;
+
+    private DatabaseHelper db;
+    private HikeRepository repository;
+    private ExecutorService importThread;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("import-benchmark.db");
+        repository = new HikeRepository(db);
+        importThread = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        importThread.shutdownNow();
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void importWhileSaving() throws Exception {
+        byte[] file = csv();
+        long start = SystemClock.elapsedRealtime();
+        Future<HikeImporter.Result> running = importThread.submit(() ->
+                new HikeImporter().importFrom(db, repository, new ByteArrayInputStream(file),
+                        HikeExporter.Format.CSV, false));
+
+        // a save issued mid-import waits for one chunk at most, not for the whole file
+        int saves = 0;
+        long slowestSave = 0;
+        while (!running.isDone()) {
+            long issued = SystemClock.elapsedRealtime();
+            int n = saves;
+            Long id = repository.awaitWrite(h -> h.addHike(TestDatabases.hike("Saved " + n, "01/07/2024")));
+            assertNotNull(id);
+            assertTrue(id > 0);
+            slowestSave = Math.max(slowestSave, SystemClock.elapsedRealtime() - issued);
+            saves++;
+            Thread.sleep(SAVE_INTERVAL_MS);
+        }
+        HikeImporter.Result result = running.get(1, TimeUnit.SECONDS);
+        long millis = SystemClock.elapsedRealtime() - start;
+
+        assertNotNull(result);
+        assertEquals(HIKES, result.getHikes());
+        assertEquals(HIKES / OBSERVATION_EVERY, result.getObservations());
+        assertEquals(HIKES + saves, db.getAllHikes().size());
+        Log.i(TAG, HIKES + " hikes imported in " + millis + " ms (" + result.recordsPerSecond() +
+                " records/s); " + saves + " saves meanwhile, slowest " + slowestSave + " ms");
+    }
+
+    private static byte[] csv() {
+        StringBuilder out = new StringBuilder(HIKES * 96);
+        out.append("hike_id,name,location,date,parking,length,difficulty,description,weather,group_size,")
+                .append("observation_id,observation,time,comments\n");
+        for (int i = 1; i <= HIKES; i++) {
+            out.append(i).append(",Hike ").append(i).append(",Lake District,")
+                    .append(1 + i % 28).append('/').append(1 + i % 12).append("/2024,")
+                    .append(i % 2 == 0 ? "Yes" : "No").append(',').append(1 + i % 30).append(".5,Medium,")
+                    .append("Ridge walk,Sunny,4,");
+            if (i % OBSERVATION_EVERY == 0) {
+                out.append(i).append(",Red kite,01/06/2024 10:30,\n");
+            } else {
+                out.append(",,,\n");
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.mhike.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeStats;
+import com.example.mhike.models.Observation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The trigger-maintained hike_stats must equal a GROUP BY recompute after every kind
+ * of write, tombstones and purges included.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeStatsTableTest {
+
+    private static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard"};
+    private static final String[] LOCATIONS = {"Lake District", "Snowdonia", "Peak District"};
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("hike-stats-test.db");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void statsMatchRecomputeThroughEveryWrite() {
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Hike hike = new Hike("Hike " + i, LOCATIONS[i % LOCATIONS.length], (1 + i % 28) + "/" + (1 + i % 12) + "/2024",
+                    i % 2 == 0, 5 + i * 0.25, DIFFICULTIES[i % DIFFICULTIES.length], "", "", 2);
+            hikes.add(hike);
+        }
+        assertEquals(60, db.addHikes(hikes));
+        assertConsistent();
+
+        for (int i = 0; i < 60; i += 3) {
+            db.addObservation(TestDatabases.observation(hikes.get(i).getId(), "Sighting " + i));
+            db.addObservation(TestDatabases.observation(hikes.get(i).getId(), "Another " + i));
+        }
+        assertConsistent();
+
+        // moves a hike to another difficulty, place, month and length
+        Hike edit = db.getHike(hikes.get(0).getId());
+        edit.setDifficulty("Hard");
+        edit.setLocation("Cairngorms");
+        edit.setDate("15/12/2023");
+        edit.setLength(42.5);
+        assertEquals(1, db.updateHike(edit));
+        assertConsistent();
+
+        List<Observation> observations = db.getObservationsByHike(hikes.get(3).getId());
+        db.deleteObservation(observations.get(0).getId());
+        assertConsistent();
+
+        long single = db.deleteHike(hikes.get(6).getId());
+        assertTrue(single > 0);
+        assertConsistent();
+        assertEquals(59, db.getHikeStats().getTotalHikes());
+
+        // undo of a single delete, then delete everything and undo that
+        assertEquals(1, db.undoDelete(single));
+        assertConsistent();
+        long all = db.deleteAllHikes();
+        assertTrue(all > 0);
+        assertConsistent();
+        assertEquals(0, db.getHikeStats().getTotalHikes());
+        assertEquals(60, db.undoDelete(all));
+        assertConsistent();
+
+        // an observation added to a tombstoned hike is not counted until it comes back
+        long again = db.deleteHike(hikes.get(9).getId());
+        db.addObservation(TestDatabases.observation(hikes.get(9).getId(), "Late note"));
+        assertConsistent();
+        assertEquals(1, db.undoDelete(again));
+        assertConsistent();
+
+        // purge in chunks, as HikeRepository.purgeDeleted does
+        long stamp = db.deleteAllHikes();
+        while (db.purgeDeletedHikes(stamp, 7) == 7) {
+            assertConsistent();
+        }
+        assertConsistent();
+        HikeStats stats = db.getHikeStats();
+        assertEquals(0, stats.getTotalHikes());
+        assertEquals(0, stats.getTotalObservations());
+    }
+
+    @Test
+    public void rebuildRepairsWritesMadeBehindTheTriggers() {
+        db.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        db.getWritableDatabase().execSQL("DELETE FROM " + HikeStatsTable.TABLE);
+        assertTrue(db.checkHikeStats() > 0);
+
+        db.rebuildHikeStats();
+        assertEquals(0, db.checkHikeStats());
+    }
+
+    private void assertConsistent() {
+        assertEquals(0, db.checkHikeStats());
+    }
+}
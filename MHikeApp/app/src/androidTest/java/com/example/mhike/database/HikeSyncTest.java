@@ -0,0 +1,210 @@
+package com.example.mhike.database;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Two devices syncing through FakeSyncServer: rows pushed by one arrive on the other,
+ * a stale edit loses to the server copy, and a sync cut off halfway resumes from the
+ * stored push and pull cursors without sending or fetching a batch twice.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeSyncTest {
+
+    // more than two of HikeSync's 200-row batches
+    private static final int MANY_HIKES = 450;
+
+    private DatabaseHelper deviceA;
+    private DatabaseHelper deviceB;
+    private HikeRepository repoA;
+    private HikeRepository repoB;
+    private FakeSyncServer server;
+
+    @Before
+    public void setUp() {
+        deviceA = TestDatabases.open("sync-device-a-test.db");
+        deviceB = TestDatabases.open("sync-device-b-test.db");
+        repoA = new HikeRepository(deviceA);
+        repoB = new HikeRepository(deviceB);
+        server = new FakeSyncServer();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(deviceA);
+        TestDatabases.delete(deviceB);
+    }
+
+    @Test
+    public void pushedRowsArriveOnTheOtherDevice() {
+        int helvellyn = (int) deviceA.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        int catbells = (int) deviceA.addHike(TestDatabases.hike("Catbells", "02/06/2024"));
+        deviceA.addObservation(TestDatabases.observation(helvellyn, "Red kite"));
+        deviceA.addObservation(TestDatabases.observation(helvellyn, "Ravens"));
+        deviceA.addObservation(TestDatabases.observation(catbells, "Heron"));
+
+        HikeSync.Result pushed = sync(repoA);
+        assertNotNull(pushed);
+        assertEquals(5, pushed.getPushed());
+        assertEquals(2, server.liveRows(DatabaseHelper.SYNC_HIKES));
+        assertEquals(3, server.liveRows(DatabaseHelper.SYNC_OBSERVATIONS));
+
+        HikeSync.Result pulled = sync(repoB);
+        assertNotNull(pulled);
+        assertEquals(5, pulled.getPulled());
+        assertEquals(names(deviceA), names(deviceB));
+        Hike copy = find(deviceB, "Helvellyn");
+        assertEquals(texts(deviceA, helvellyn), texts(deviceB, copy.getId()));
+
+        // nothing left to send or fetch
+        HikeSync.Result again = sync(repoA);
+        assertEquals(0, again.getPushed());
+        assertEquals(0, again.getPulled());
+    }
+
+    @Test
+    public void staleEditLosesToTheServerCopy() {
+        deviceA.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        assertNotNull(sync(repoA));
+        assertNotNull(sync(repoB));
+
+        Hike onB = find(deviceB, "Helvellyn");
+        onB.setName("Helvellyn via Striding Edge");
+        assertEquals(1, deviceB.updateHike(onB));
+        assertNotNull(sync(repoB));
+
+        // A edits the version it pulled before B's edit reached the server
+        Hike onA = find(deviceA, "Helvellyn");
+        onA.setName("Helvellyn via Swirral Edge");
+        assertEquals(1, deviceA.updateHike(onA));
+        List<DbChange> changes = new CopyOnWriteArrayList<>();
+        deviceA.addChangeListener(changes::add);
+
+        HikeSync.Result result = sync(repoA);
+        assertNotNull(result);
+        assertEquals(1, result.getConflicts());
+        assertEquals(0, result.getPushed());
+        assertEquals("Helvellyn via Striding Edge", deviceA.getHike(onA.getId()).getName());
+
+        // the server copy is announced for that row only
+        boolean updated = false;
+        for (DbChange change : changes) {
+            assertNotEquals(DbChange.Op.CLEAR, change.getOp());
+            if (change.getOp() == DbChange.Op.UPDATE && change.getIds().length == 1 &&
+                    change.getIds()[0] == onA.getId()) {
+                updated = true;
+            }
+        }
+        assertTrue(updated);
+    }
+
+    @Test
+    public void interruptedPushResumesAfterTheLastBatch() {
+        addHikes(deviceA, MANY_HIKES);
+
+        server.failAfter(1);
+        assertNull(sync(repoA));
+        assertEquals(200, server.liveRows(DatabaseHelper.SYNC_HIKES));
+
+        HikeSync.Result resumed = sync(repoA);
+        assertNotNull(resumed);
+        assertEquals(MANY_HIKES - 200, resumed.getPushed());
+        assertEquals(MANY_HIKES, server.liveRows(DatabaseHelper.SYNC_HIKES));
+        // the first batch was not sent again
+        assertEquals(MANY_HIKES, server.pushedRows);
+    }
+
+    @Test
+    public void interruptedPullResumesFromTheStoredCursor() {
+        addHikes(deviceA, MANY_HIKES);
+        assertNotNull(sync(repoA));
+
+        server.failAfter(1);
+        assertNull(sync(repoB));
+        assertEquals(200, deviceB.getAllHikes().size());
+
+        int callsBefore = server.pullSince.size();
+        HikeSync.Result resumed = sync(repoB);
+        assertNotNull(resumed);
+        assertEquals(MANY_HIKES - 200, resumed.getPulled());
+        assertEquals(MANY_HIKES, deviceB.getAllHikes().size());
+        // versions 1..200 came with the batch that committed before the failure
+        assertEquals(Long.valueOf(200), server.pullSince.get(callsBefore));
+    }
+
+    @Test
+    public void observationsOfAnUnpushedDeletedHikeDoNotBlockOthers() {
+        int deleted = (int) deviceA.addHike(TestDatabases.hike("Catbells", "02/06/2024"));
+        deviceA.addObservation(TestDatabases.observation(deleted, "Heron"));
+        long stamp = deviceA.deleteHike(deleted);
+        int kept = (int) deviceA.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        deviceA.addObservation(TestDatabases.observation(kept, "Red kite"));
+
+        assertNotNull(sync(repoA));
+        assertEquals(1, server.liveRows(DatabaseHelper.SYNC_HIKES));
+        assertEquals(Collections.singletonList("Red kite"), serverTexts());
+
+        // the held-back observation goes out once its hike does
+        assertEquals(1, deviceA.undoDelete(stamp));
+        assertNotNull(sync(repoA));
+        assertEquals(2, server.liveRows(DatabaseHelper.SYNC_HIKES));
+        assertEquals(Arrays.asList("Heron", "Red kite"), serverTexts());
+    }
+
+    private HikeSync.Result sync(HikeRepository repository) {
+        return new HikeSync().sync(repository, server);
+    }
+
+    private static void addHikes(DatabaseHelper db, int count) {
+        List<Hike> hikes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) hikes.add(TestDatabases.hike("Hike " + i, (1 + i % 28) + "/6/2024"));
+        assertEquals(count, db.addHikes(hikes));
+    }
+
+    private static List<String> names(DatabaseHelper db) {
+        List<String> names = new ArrayList<>();
+        for (Hike hike : db.getAllHikes()) names.add(hike.getName());
+        Collections.sort(names);
+        return names;
+    }
+
+    private static Hike find(DatabaseHelper db, String name) {
+        for (Hike hike : db.getAllHikes()) {
+            if (hike.getName().equals(name)) return hike;
+        }
+        fail("no hike " + name);
+        return null;
+    }
+
+    private static List<String> texts(DatabaseHelper db, int hikeId) {
+        List<String> texts = new ArrayList<>();
+        for (Observation obs : db.getObservationsByHike(hikeId)) texts.add(obs.getObservationText());
+        Collections.sort(texts);
+        return texts;
+    }
+
+    private List<String> serverTexts() {
+        List<String> texts = new ArrayList<>();
+        for (JSONObject data : server.rows(DatabaseHelper.SYNC_OBSERVATIONS).values()) {
+            texts.add(data.optString("observation"));
+        }
+        Collections.sort(texts);
+        return texts;
+    }
+}
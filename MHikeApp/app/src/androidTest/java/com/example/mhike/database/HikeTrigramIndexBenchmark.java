@@ -0,0 +1,111 @@
+package com.example.mhike.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Substring lookups at 1k, 10k and 100k hikes: trigram index against the LIKE scan.
+ * Timings (median of REPEATS) go to logcat under this class name; the test itself
+ * only fails if the two paths disagree on the result.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeTrigramIndexBenchmark {
+
+    private static final String TAG = "HikeTrigramIndexBenchmark";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int REPEATS = 7;
+    private static final String[] SYLLABLES = {"fell", "crag", "ridge", "tarn", "beck", "pike", "how", "side", "moor", "dale"};
+    private static final String[] PLACES = {"Lake District", "Snowdonia", "Peak District", "Cairngorms", "Dartmoor"};
+    // common, rare, short and absent needles
+    private static final String[] NEEDLES = {"ridge", "tarnbeck", "how", "pike moor", "zzq", "dart"};
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("trigram-benchmark.db");
+    }
+
+    @After
+    public void tearDown() {
+        db.setTrigramIndexEnabled(false);
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void indexAgainstLikeScan() {
+        Random random = new Random(7);
+        int count = 0;
+        for (int size : SIZES) {
+            List<Hike> batch = new ArrayList<>(size - count);
+            for (; count < size; count++) batch.add(randomHike(random));
+            assertEquals(batch.size(), db.addHikes(batch));
+
+            db.setTrigramIndexEnabled(false);
+            long[] like = new long[NEEDLES.length];
+            List<int[]> likeIds = new ArrayList<>();
+            for (int n = 0; n < NEEDLES.length; n++) {
+                like[n] = medianNanos(NEEDLES[n]);
+                likeIds.add(ids(db.searchHikesByText(NEEDLES[n])));
+            }
+
+            db.setTrigramIndexEnabled(true);
+            long buildStart = SystemClock.elapsedRealtimeNanos();
+            db.searchHikesByText("warm up");
+            long buildNanos = SystemClock.elapsedRealtimeNanos() - buildStart;
+            for (int n = 0; n < NEEDLES.length; n++) {
+                long indexed = medianNanos(NEEDLES[n]);
+                int[] indexIds = ids(db.searchHikesByText(NEEDLES[n]));
+                assertArrayEquals(NEEDLES[n] + " at " + size, likeIds.get(n), indexIds);
+                Log.i(TAG, size + " hikes, \"" + NEEDLES[n] + "\" (" + indexIds.length + " hits): LIKE " +
+                        micros(like[n]) + " us, index " + micros(indexed) + " us");
+            }
+            Log.i(TAG, size + " hikes: index built in " + micros(buildNanos) + " us");
+        }
+    }
+
+    private long medianNanos(String needle) {
+        long[] runs = new long[REPEATS];
+        for (int i = 0; i < REPEATS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            db.searchHikesByText(needle);
+            runs[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(runs);
+        return runs[REPEATS / 2];
+    }
+
+    private static Hike randomHike(Random random) {
+        String name = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)] +
+                " " + SYLLABLES[random.nextInt(SYLLABLES.length)];
+        String date = (1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)) + "/" + (2015 + random.nextInt(10));
+        return new Hike(name, PLACES[random.nextInt(PLACES.length)], date, random.nextBoolean(),
+                1 + random.nextInt(300) / 10.0, "Medium", "", "", 2);
+    }
+
+    private static int[] ids(List<Hike> hikes) {
+        int[] ids = new int[hikes.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = hikes.get(i).getId();
+        return ids;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1_000;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.mhike.models.Hike;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * EXPLAIN QUERY PLAN of the hot queries: each must seek an index, never scan the
+ * table or sort in a temp b-tree, however deep the page. The first page and the
+ * full list have no key to seek to, so they must walk the live-date index in order.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("query-plan-test.db");
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // every tenth hike has an unparseable date and lands in the NULL-date tail
+            hikes.add(TestDatabases.hike("Hike " + i, i % 10 == 0 ? "someday" : (1 + i % 28) + "/06/2024"));
+        }
+        db.addHikes(hikes);
+        db.getWritableDatabase().execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void firstHikePageWalksTheLiveDateIndex() {
+        List<String> plan = plan("hikes", DatabaseHelper.LIVE_HIKES_WHERE, null, DatabaseHelper.HIKE_ORDER_BY, "21");
+        assertWalksInOrder(plan, "hikes", "idx_hikes_live_date");
+    }
+
+    @Test
+    public void allHikesWalkTheLiveDateIndex() {
+        List<String> plan = plan("hikes", DatabaseHelper.LIVE_HIKES_WHERE, null, DatabaseHelper.HIKE_ORDER_BY, null);
+        assertWalksInOrder(plan, "hikes", "idx_hikes_live_date");
+    }
+
+    @Test
+    public void deepHikePageSeeksTheLiveDateIndex() {
+        List<String> plan = plan("hikes", DatabaseHelper.PAGE_AFTER_KEY_WHERE,
+                new String[]{"19875", "250"}, DatabaseHelper.HIKE_ORDER_BY, "21");
+        assertSeeks(plan, "hikes", "idx_hikes_live_date");
+    }
+
+    @Test
+    public void nullDatePageSeeksTheLiveDateIndex() {
+        assertSeeks(plan("hikes", DatabaseHelper.PAGE_NULL_DATES_WHERE, null, DatabaseHelper.HIKE_ORDER_BY, "21"),
+                "hikes", "idx_hikes_live_date");
+        assertSeeks(plan("hikes", DatabaseHelper.PAGE_NULL_DATES_AFTER_ID_WHERE, new String[]{"250"},
+                DatabaseHelper.HIKE_ORDER_BY, "21"), "hikes", "idx_hikes_live_date");
+    }
+
+    @Test
+    public void dateRangeSeeksTheLiveDateIndex() {
+        List<String> plan = plan("hikes", DatabaseHelper.HIKES_BETWEEN_WHERE,
+                new String[]{"19870", "19880"}, DatabaseHelper.HIKE_ORDER_BY, null);
+        assertSeeks(plan, "hikes", "idx_hikes_live_date");
+    }
+
+    @Test
+    public void observationsOfAHikeSeekTheHikeTimeIndex() {
+        ResolvedSchema s = db.schema(db.getReadableDatabase());
+        List<String> plan = plan("observations", s.obsHikeRef + "=?", new String[]{"1"}, s.obsOrderBy, null);
+        assertSeeks(plan, "observations", "idx_obs_hike_time_epoch");
+    }
+
+    private List<String> plan(String table, String where, String[] args, String orderBy, String limit) {
+        String sql = SQLiteQueryBuilder.buildQueryString(false, table, null, where, null, null, orderBy, limit);
+        SQLiteDatabase database = db.getReadableDatabase();
+        List<String> details = new ArrayList<>();
+        try (Cursor c = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            // SQLite before 3.24 says "SCAN TABLE hikes" where newer ones say "SCAN hikes"
+            while (c.moveToNext()) details.add(c.getString(detail).replace("TABLE ", ""));
+        }
+        return details;
+    }
+
+    private static void assertSeeks(List<String> plan, String table, String index) {
+        boolean seeks = false;
+        for (String step : plan) {
+            assertFalse("full scan: " + plan, step.startsWith("SCAN"));
+            assertFalse("sorts in a temp b-tree: " + plan, step.contains("TEMP B-TREE"));
+            if (step.startsWith("SEARCH " + table) && step.contains("INDEX " + index)) seeks = true;
+        }
+        assertTrue("does not seek " + index + ": " + plan, seeks);
+    }
+
+    // reads rows in index order and stops at the LIMIT; a table scan plus sort fails
+    private static void assertWalksInOrder(List<String> plan, String table, String index) {
+        boolean walks = false;
+        for (String step : plan) {
+            assertFalse("sorts in a temp b-tree: " + plan, step.contains("TEMP B-TREE"));
+            if (step.startsWith("SCAN")) {
+                assertTrue("full scan: " + plan, step.startsWith("SCAN " + table) && step.contains("INDEX " + index));
+                walks = true;
+            } else if (step.startsWith("SEARCH " + table) && step.contains("INDEX " + index)) {
+                walks = true;
+            }
+        }
+        assertTrue("does not use " + index + ": " + plan, walks);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mhike.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mhike.models.Hike;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * One DatabaseHelper per process: every context and thread gets the same instance,
+ * and its connection stays open between calls. The per-call latency against the old
+ * open/close-per-call pattern goes to logcat under this class name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SharedHelperTest {
+
+    private static final String TAG = "SharedHelperTest";
+    private static final int HIKES = 1_000;
+    private static final int CALLS = 50;
+
+    @Test
+    public void everyCallerGetsTheSameHelper() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        DatabaseHelper helper = DatabaseHelper.getInstance(context);
+
+        assertSame(helper, DatabaseHelper.getInstance(context.getApplicationContext()));
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            Future<DatabaseHelper> fromOtherThread = other.submit(() -> DatabaseHelper.getInstance(context));
+            assertSame(helper, fromOtherThread.get(5, TimeUnit.SECONDS));
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    public void connectionStaysOpenAcrossCalls() {
+        DatabaseHelper db = TestDatabases.open("shared-helper-test.db");
+        try {
+            SQLiteDatabase first = db.getWritableDatabase();
+            int id = (int) db.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+            assertNotNull(db.getHike(id));
+            assertEquals(1, db.getAllHikes().size());
+
+            assertTrue(first.isOpen());
+            assertSame(first, db.getReadableDatabase());
+        } finally {
+            TestDatabases.delete(db);
+        }
+    }
+
+    @Test
+    public void sharedConnectionAgainstOpenClosePerCall() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        DatabaseHelper db = TestDatabases.open("shared-helper-benchmark.db");
+        try {
+            List<Hike> hikes = new ArrayList<>(HIKES);
+            for (int i = 0; i < HIKES; i++) hikes.add(TestDatabases.hike("Hike " + i, (1 + i % 28) + "/6/2024"));
+            assertEquals(HIKES, db.addHikes(hikes));
+
+            // before: a fresh helper per call, opened, configured and closed again
+            long[] perCall = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                DatabaseHelper fresh = new DatabaseHelper(context, db.getDatabaseName());
+                assertEquals(HIKES, fresh.getAllHikes().size());
+                fresh.close();
+                perCall[i] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+
+            long[] shared = new long[CALLS];
+            for (int i = 0; i < CALLS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                assertEquals(HIKES, db.getAllHikes().size());
+                shared[i] = SystemClock.elapsedRealtimeNanos() - start;
+            }
+
+            Log.i(TAG, "getAllHikes over " + HIKES + " hikes, median of " + CALLS + ": open/close per call " +
+                    median(perCall) / 1_000 + " us, shared connection " + median(shared) / 1_000 + " us");
+        } finally {
+            TestDatabases.delete(db);
+        }
+    }
+
+    private static long median(long[] runs) {
+        Arrays.sort(runs);
+        return runs[runs.length / 2];
+    }
+}
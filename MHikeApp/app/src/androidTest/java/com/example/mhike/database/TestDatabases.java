@@ -0,0 +1,38 @@
+package com.example.mhike.database;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+/**
+ * Fresh DatabaseHelper instances on their own files, so instrumented tests never
+ * read or write the hikes of the app under test.
+ */
+final class TestDatabases {
+
+    private TestDatabases() {
+    }
+
+    static DatabaseHelper open(String name) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(name);
+        return new DatabaseHelper(context, name);
+    }
+
+    static void delete(DatabaseHelper helper) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper.close();
+        context.deleteDatabase(helper.getDatabaseName());
+    }
+
+    static Hike hike(String name, String date) {
+        return new Hike(name, "Lake District", date, true, 12.5, "Medium", "Ridge walk", "Sunny", 4);
+    }
+
+    static Observation observation(int hikeId, String text) {
+        return new Observation(hikeId, text, "01/06/2024 10:30", "");
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * WAL mode: list reads on another thread complete while a large write transaction
+ * is still open, and see only the rows committed before it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WalConcurrencyTest {
+
+    private static final String TAG = "WalConcurrencyTest";
+    private static final int BULK_ROWS = 20_000;
+    // far below what the writer holds its transaction open for
+    private static final long READ_TIMEOUT_MS = 2_000;
+    private static final long WRITER_HOLD_MS = 10_000;
+
+    private DatabaseHelper db;
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() {
+        db = TestDatabases.open("wal-concurrency-test.db");
+        threads = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+        TestDatabases.delete(db);
+    }
+
+    @Test
+    public void journalModeIsWal() {
+        // journal_mode is a property of the file, so any pooled connection reports it
+        assertEquals("wal", pragma("journal_mode").toLowerCase());
+    }
+
+    @Test
+    public void readersAreNotBlockedByOpenWriteTransaction() throws Exception {
+        db.addHike(TestDatabases.hike("Helvellyn", "01/06/2024"));
+        db.addHike(TestDatabases.hike("Catbells", "02/06/2024"));
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> writer = threads.submit(() -> {
+            SQLiteDatabase database = db.getWritableDatabase();
+            database.beginTransactionNonExclusive();
+            try {
+                database.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + BULK_ROWS + ") " +
+                        "INSERT INTO hikes (name, location, date, parking, length, difficulty) " +
+                        "SELECT 'Bulk ' || i, 'Lake District', '03/06/2024', 0, 1.0, 'Easy' FROM n");
+                writing.countDown();
+                release.await(WRITER_HOLD_MS, TimeUnit.MILLISECONDS);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            return null;
+        });
+
+        try {
+            assertTrue("writer never started", writing.await(WRITER_HOLD_MS, TimeUnit.MILLISECONDS));
+
+            long start = SystemClock.elapsedRealtime();
+            Future<Integer> listed = threads.submit(() -> db.getAllHikes().size());
+            // throws TimeoutException if the read waits for the writer
+            int seen = listed.get(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            Log.i(TAG, "list read during open write: " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+            assertEquals(2, seen);
+        } finally {
+            release.countDown();
+        }
+        writer.get(WRITER_HOLD_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(2 + BULK_ROWS, db.getAllHikes().size());
+    }
+
+    private String pragma(String name) {
+        Cursor c = db.getReadableDatabase().rawQuery("PRAGMA " + name, null);
+        try {
+            assertTrue(c.moveToFirst());
+            return c.getString(0);
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.mhike.models;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hike and Observation Parcelable round trips, and the marshal/unmarshal cost of a
+ * hike list against Java serialization of the same fields (the models used to be
+ * Serializable). Timings and sizes go to logcat under this class name.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParcelableModelTest {
+
+    private static final String TAG = "ParcelableModelTest";
+    private static final int HIKES = 1_000;
+    private static final int REPEATS = 9;
+
+    @Test
+    public void hikeRoundTrip() {
+        Hike hike = new Hike("Helvellyn", "Glenridding", "01/06/2024", true, 12.5, "Hard",
+                "Striding Edge \u2192 Swirral Edge", "Sunny", 4);
+        hike.setId(42);
+
+        assertSameHike(hike, unparcel(hike, Hike.CREATOR));
+    }
+
+    @Test
+    public void hikeWithNullsRoundTrip() {
+        Hike hike = new Hike();
+        hike.setLength(-0.5);
+
+        Hike copy = unparcel(hike, Hike.CREATOR);
+        assertSameHike(hike, copy);
+        assertNull(copy.getName());
+        assertNull(copy.getWeather());
+    }
+
+    @Test
+    public void observationRoundTrip() {
+        Observation obs = new Observation(42, "Red kite", "01/06/2024 10:30", null);
+        obs.setId(7);
+
+        Observation copy = unparcel(obs, Observation.CREATOR);
+        assertEquals(7, copy.getId());
+        assertEquals(42, copy.getHikeId());
+        assertEquals("Red kite", copy.getObservationText());
+        assertEquals("01/06/2024 10:30", copy.getTime());
+        assertNull(copy.getComments());
+    }
+
+    @Test
+    public void hikeListRoundTrip() {
+        List<Hike> hikes = hikes();
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeTypedList(hikes);
+            parcel.setDataPosition(0);
+            List<Hike> copy = parcel.createTypedArrayList(Hike.CREATOR);
+
+            assertEquals(hikes.size(), copy.size());
+            for (int i = 0; i < hikes.size(); i++) assertSameHike(hikes.get(i), copy.get(i));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void parcelableAgainstSerializable() throws Exception {
+        List<Hike> hikes = hikes();
+        ArrayList<SerializedHike> serialized = new ArrayList<>(hikes.size());
+        for (Hike hike : hikes) serialized.add(new SerializedHike(hike));
+
+        long[] parcelRuns = new long[REPEATS];
+        long[] serialRuns = new long[REPEATS];
+        int parcelBytes = 0;
+        int serialBytes = 0;
+        for (int r = 0; r < REPEATS; r++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeTypedList(hikes);
+                parcelBytes = parcel.dataSize();
+                parcel.setDataPosition(0);
+                assertEquals(HIKES, parcel.createTypedArrayList(Hike.CREATOR).size());
+            } finally {
+                parcel.recycle();
+            }
+            parcelRuns[r] = SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            byte[] bytes = serialize(serialized);
+            serialBytes = bytes.length;
+            assertEquals(HIKES, deserialize(bytes).size());
+            serialRuns[r] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        Log.i(TAG, HIKES + " hikes, marshal + unmarshal median: Parcelable " + median(parcelRuns) / 1_000 +
+                " us (" + parcelBytes + " bytes), Serializable " + median(serialRuns) / 1_000 +
+                " us (" + serialBytes + " bytes)");
+    }
+
+    private static <T extends Parcelable> T unparcel(T value, Parcelable.Creator<T> creator) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            value.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return creator.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static void assertSameHike(Hike expected, Hike actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getLocation(), actual.getLocation());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.isParking(), actual.isParking());
+        assertEquals(expected.getLength(), actual.getLength(), 0);
+        assertEquals(expected.getDifficulty(), actual.getDifficulty());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getWeather(), actual.getWeather());
+        assertEquals(expected.getGroupSize(), actual.getGroupSize());
+    }
+
+    private static List<Hike> hikes() {
+        List<Hike> hikes = new ArrayList<>(HIKES);
+        for (int i = 0; i < HIKES; i++) {
+            Hike hike = new Hike("Hike " + i, "Lake District", (1 + i % 28) + "/6/2024", i % 2 == 0,
+                    i / 10.0, "Medium", "Ridge walk", "Sunny", 1 + i % 8);
+            hike.setId(i + 1);
+            hikes.add(hike);
+        }
+        return hikes;
+    }
+
+    private static byte[] serialize(ArrayList<SerializedHike> hikes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(hikes);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<SerializedHike> deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (List<SerializedHike>) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long median(long[] runs) {
+        Arrays.sort(runs);
+        return runs[runs.length / 2];
+    }
+
+    // the fields Hike used to put into intents through Serializable
+    private static final class SerializedHike implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+        private final String name;
+        private final String location;
+        private final String date;
+        private final boolean parking;
+        private final double length;
+        private final String difficulty;
+        private final String description;
+        private final String weather;
+        private final int groupSize;
+
+        SerializedHike(Hike hike) {
+            id = hike.getId();
+            name = hike.getName();
+            location = hike.getLocation();
+            date = hike.getDate();
+            parking = hike.isParking();
+            length = hike.getLength();
+            difficulty = hike.getDifficulty();
+            description = hike.getDescription();
+            weather = hike.getWeather();
+            groupSize = hike.getGroupSize();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.mhike;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
+import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.HikeRepository;
+
+public class MHikeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Debug builds flag any disk access left on the main thread;
+        // all database work is expected to go through HikeRepository
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+
+        // Name/location lookups from memory; warmed in the background so the first search is fast
+        DatabaseHelper.getInstance(this).setTrigramIndexEnabled(true);
+        HikeRepository.getInstance(this).read(null, db -> db.searchHikesByText(""), null);
+
+        // deletes whose undo window closed with the last process (e.g. it was killed)
+        HikeRepository.getInstance(this).purgeDeleted(System.currentTimeMillis());
+    }
+}
@@ -16,6 +16,7 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.example.mhike.R;
 import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeValidator;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -58,7 +59,7 @@ public class AddHikeActivity extends AppCompatActivity {
 
         // Check if editing existing hike
         if (getIntent().hasExtra("hike")) {
-            currentHike = (Hike) getIntent().getSerializableExtra("hike");
+            currentHike = getIntent().getParcelableExtra("hike");
             if (getSupportActionBar() != null) getSupportActionBar().setTitle("Edit Hike");
             fillFormFields(currentHike);
         } else {
@@ -158,42 +159,37 @@ public class AddHikeActivity extends AppCompatActivity {
 
         // Validate name
         String hikeName = inputHikeName.getText().toString().trim();
-        if (hikeName.isEmpty()) {
-            inputHikeName.setError("Name is required");
+        String nameError = HikeValidator.checkName(hikeName);
+        if (nameError != null) {
+            inputHikeName.setError(nameError);
             formValid = false;
         }
 
         // Validate location
         String hikeLocation = inputHikeLocation.getText().toString().trim();
-        if (hikeLocation.isEmpty()) {
-            inputHikeLocation.setError("Location is required");
+        String locationError = HikeValidator.checkLocation(hikeLocation);
+        if (locationError != null) {
+            inputHikeLocation.setError(locationError);
             formValid = false;
         }
 
         // Validate date
         String hikeDate = inputHikeDate.getText().toString().trim();
-        if (hikeDate.isEmpty()) {
-            inputHikeDate.setError("Date is required");
+        String dateError = HikeValidator.checkDate(hikeDate);
+        if (dateError != null) {
+            inputHikeDate.setError(dateError);
             formValid = false;
         }
 
         // Validate length
         String distanceText = inputHikeDistance.getText().toString().trim();
         double hikeDistance = 0;
-        if (distanceText.isEmpty()) {
-            inputHikeDistance.setError("Length is required");
+        String distanceError = HikeValidator.checkLength(distanceText);
+        if (distanceError != null) {
+            inputHikeDistance.setError(distanceError);
             formValid = false;
         } else {
-            try {
-                hikeDistance = Double.parseDouble(distanceText);
-                if (hikeDistance <= 0) {
-                    inputHikeDistance.setError("Length must be greater than 0");
-                    formValid = false;
-                }
-            } catch (NumberFormatException e) {
-                inputHikeDistance.setError("Invalid length format");
-                formValid = false;
-            }
+            hikeDistance = Double.parseDouble(distanceText);
         }
 
         // Validate parking
@@ -240,14 +236,7 @@ public class AddHikeActivity extends AppCompatActivity {
         hike.setDescription(inputHikeDesc.getText().toString().trim());
         hike.setWeather(inputHikeWeatherInfo.getText().toString().trim());
 
-        String teamSizeText = inputHikeTeamSize.getText().toString().trim();
-        if (!teamSizeText.isEmpty()) {
-            try {
-                hike.setGroupSize(Integer.parseInt(teamSizeText));
-            } catch (NumberFormatException e) {
-                hike.setGroupSize(0);
-            }
-        }
+        hike.setGroupSize(HikeValidator.parseGroupSize(inputHikeTeamSize.getText().toString()));
 
         // Go to confirmation screen
         Intent intent = new Intent(AddHikeActivity.this, ConfirmationActivity.class);
@@ -12,7 +12,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.mhike.R;
-import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.HikeRepository;
 import com.example.mhike.models.Hike;
 
 public class ConfirmationActivity extends AppCompatActivity {
@@ -21,7 +21,7 @@ public class ConfirmationActivity extends AppCompatActivity {
 
     private TextView summaryText;
     private Button saveButton, editButton;
-    private DatabaseHelper dbHelper;
+    private HikeRepository repository;
     private Hike currentHike;
     private boolean isEditMode;
 
@@ -43,11 +43,11 @@ public class ConfirmationActivity extends AppCompatActivity {
         saveButton = findViewById(R.id.saveButton);
         editButton = findViewById(R.id.editButton);
 
-        // Initialize database helper
-        dbHelper = new DatabaseHelper(this);
+        // Database (all calls run off the main thread)
+        repository = HikeRepository.getInstance(this);
 
         // Get hike data (null-check để tránh crash)
-        currentHike = (Hike) getIntent().getSerializableExtra("hike");
+        currentHike = getIntent().getParcelableExtra("hike");
         isEditMode = getIntent().getBooleanExtra("isEdit", false);
 
         if (currentHike == null) {
@@ -89,55 +89,48 @@ public class ConfirmationActivity extends AppCompatActivity {
     }
 
     private void saveHikeData() {
-        try {
-            if (isEditMode) {
-                int rowsAffected = dbHelper.updateHike(currentHike);
-                if (rowsAffected > 0) {
+        // avoid a second insert from a double tap while the write is queued
+        saveButton.setEnabled(false);
+
+        if (isEditMode) {
+            repository.write(this, db -> db.updateHike(currentHike), rowsAffected -> {
+                if (rowsAffected != null && rowsAffected > 0) {
                     Toast.makeText(this, "Hike updated successfully", Toast.LENGTH_SHORT).show();
                     Log.d(TAG, "Hike updated id=" + currentHike.getId());
 
-                    // Notify MainActivity to refresh
-                    Intent intent = new Intent(this, MainActivity.class);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                    intent.putExtra("refresh", true);
-                    startActivity(intent);
+                    openMain();
                 } else {
                     Toast.makeText(this, "Failed to update hike", Toast.LENGTH_SHORT).show();
                     Log.w(TAG, "updateHike returned 0 rowsAffected for id=" + currentHike.getId());
                 }
-            } else {
-                long newId = dbHelper.addHike(currentHike);
-                if (newId > 0) {
+                finish(); // quay lại MainActivity
+            });
+        } else {
+            repository.write(this, db -> db.addHike(currentHike), newId -> {
+                if (newId != null && newId > 0) {
                     // set id vào object (tiện cho sau này)
-                    currentHike.setId((int) newId);
+                    currentHike.setId(newId.intValue());
                     Toast.makeText(this, "Hike saved successfully", Toast.LENGTH_SHORT).show();
                     Log.d(TAG, "Inserted hike id=" + newId);
 
-                    // Mở MainActivity với flag CLEAR_TOP để reuse existing MainActivity và trigger onNewIntent
-                    Intent intent = new Intent(this, MainActivity.class);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                    intent.putExtra("refresh", true);
-                    startActivity(intent);
+                    // Mở MainActivity với flag CLEAR_TOP để reuse existing MainActivity
+                    openMain();
                 } else {
                     Toast.makeText(this, "Failed to save hike", Toast.LENGTH_SHORT).show();
                     Log.e(TAG, "addHike returned id <= 0");
                 }
-            }
-        } catch (Exception e) {
-            // Bắt exceptions từ DB để dễ debug
-            Toast.makeText(this, "DB error: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            Log.e(TAG, "DB exception", e);
-            e.printStackTrace();
-        } finally {
-            // Đóng helper nếu cần
-            try {
-                dbHelper.close();
-            } catch (Exception ignored) {
-            }
-            finish(); // quay lại MainActivity
+                finish(); // quay lại MainActivity
+            });
         }
     }
 
+    // MainActivity picks up the new/edited row from the database change event
+    private void openMain() {
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        startActivity(intent);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -13,7 +13,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.mhike.R;
-import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.HikeRepository;
 import com.example.mhike.models.Hike;
 
 public class HikeDetailActivity extends AppCompatActivity {
@@ -22,7 +22,7 @@ public class HikeDetailActivity extends AppCompatActivity {
     private TextView distanceDisplay, difficultyDisplay, descriptionDisplay;
     private TextView weatherDisplay, teamSizeDisplay;
     private Button viewObservationsBtn;
-    private DatabaseHelper dbHelper;
+    private HikeRepository repository;
     private Hike currentHike;
 
     @Override
@@ -39,11 +39,11 @@ public class HikeDetailActivity extends AppCompatActivity {
         // Initialize views
         setupViews();
 
-        // Initialize database helper
-        dbHelper = new DatabaseHelper(this);
+        // Database (all calls run off the main thread)
+        repository = HikeRepository.getInstance(this);
 
         // Get hike data
-        currentHike = (Hike) getIntent().getSerializableExtra("hike");
+        currentHike = getIntent().getParcelableExtra("hike");
 
         // Display hike details
         showHikeInfo();
@@ -129,9 +129,13 @@ public class HikeDetailActivity extends AppCompatActivity {
                 .setTitle("Delete Hike")
                 .setMessage("Are you sure you want to delete this hike? All related observations will also be deleted.")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    dbHelper.deleteHike(currentHike.getId());
-                    Toast.makeText(HikeDetailActivity.this, "Hike deleted", Toast.LENGTH_SHORT).show();
-                    finish();
+                    int hikeId = currentHike.getId();
+                    // the hike is hidden at once; its rows are removed in the background
+                    repository.write(this, db -> db.deleteHike(hikeId), stamp -> {
+                        if (stamp != null && stamp > 0) repository.purgeDeleted(stamp);
+                        Toast.makeText(HikeDetailActivity.this, "Hike deleted", Toast.LENGTH_SHORT).show();
+                        finish();
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -1,29 +1,94 @@
 package com.example.mhike.activities;
 
+import android.content.ContentResolver;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Button;
-import android.widget.ListView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.Lifecycle;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mhike.R;
 import com.example.mhike.adapters.HikeAdapter;
 import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.DbChange;
+import com.example.mhike.database.HikeBackup;
+import com.example.mhike.database.HikeExporter;
+import com.example.mhike.database.HikeImporter;
+import com.example.mhike.database.HikeRepository;
+import com.example.mhike.database.HikeSync;
+import com.example.mhike.database.HttpSyncTransport;
 import com.example.mhike.models.Hike;
+import com.google.android.material.snackbar.Snackbar;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
 
-    private ListView hikeListView;
+    private static final String TAG = "MainActivity";
+    private static final int PAGE_SIZE = 50;
+    // start fetching the next page this many rows before the end of the list
+    private static final int PREFETCH_ROWS = 10;
+    // change counter covered by the last backup written from this device
+    private static final String BACKUP_PREFS = "backup";
+    private static final String PREF_BACKUP_SEQ = "last_seq";
+
+    private RecyclerView hikeListView;
     private HikeAdapter adapter;
-    private DatabaseHelper dbHelper;
-    private List<Hike> allHikes;
+    private HikeRepository repository;
+    private final List<Hike> allHikes = new ArrayList<>();
+
+    // keyset of the last loaded row
+    private Long lastPageDate;
+    private int lastPageId;
+    private boolean hasMorePages;
+    private HikeRepository.Task pageTask;
+
+    // changes seen while the screen was in the background, applied on resume
+    private boolean reloadPending;
+    private final Set<Integer> pendingUpdatedIds = new HashSet<>();
+    private final Set<Integer> pendingSummaryIds = new HashSet<>();
+
+    // export target picked by the user, then written on a reader thread
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/csv"), uri -> exportTo(uri, HikeExporter.Format.CSV));
+    private final ActivityResultLauncher<String> exportJsonLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/x-ndjson"),
+            uri -> exportTo(uri, HikeExporter.Format.JSON_LINES));
+    private HikeExporter runningExport;
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::confirmImport);
+    private HikeImporter runningImport;
+    private final ActivityResultLauncher<String> backupLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"), uri -> backupTo(uri, false));
+    private final ActivityResultLauncher<String> incrementalBackupLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"), uri -> backupTo(uri, true));
+    private final ActivityResultLauncher<String[]> restoreLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::confirmRestore);
+    private HikeSync runningSync;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,8 +103,8 @@ public class MainActivity extends AppCompatActivity {
         hikeListView = findViewById(R.id.hikeListView);
         Button addHikingButton = findViewById(R.id.btnAddHiking);
 
-        // Database
-        dbHelper = new DatabaseHelper(this);
+        // Database (all calls run off the main thread)
+        repository = HikeRepository.getInstance(this);
 
         // New button listener
         addHikingButton.setOnClickListener(v -> {
@@ -48,49 +113,172 @@ public class MainActivity extends AppCompatActivity {
         });
 
         // List click
-        hikeListView.setOnItemClickListener((parent, view, position, id) -> {
-            Hike selectedHike = allHikes.get(position);
+        adapter = new HikeAdapter(selectedHike -> {
             Intent intent = new Intent(MainActivity.this, HikeDetailActivity.class);
             intent.putExtra("hike", selectedHike);
             startActivity(intent);
         });
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        hikeListView.setLayoutManager(layoutManager);
+        hikeListView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        hikeListView.setAdapter(adapter);
+
+        // Load next page when the user nears the bottom
+        hikeListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (hasMorePages && lastVisible >= adapter.getItemCount() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
 
-        loadAllHikes();
+        // Re-query only when the hikes table actually changes
+        repository.observe(this, this::onHikesChanged);
 
-        // If activity is started with refresh extra (edge-case when first created)
-        Intent startingIntent = getIntent();
-        if (startingIntent != null && startingIntent.getBooleanExtra("refresh", false)) {
-            loadAllHikes();
-        }
+        reloadHikes();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // keep this - safe fallback (reload every resume)
-        loadAllHikes();
+        applyPendingChanges();
     }
 
     @Override
-    protected void onNewIntent(Intent intent) {
-        super.onNewIntent(intent);
-        setIntent(intent); // update stored intent
-        if (intent != null && intent.getBooleanExtra("refresh", false)) {
-            loadAllHikes();
-        }
+    protected void onDestroy() {
+        // the file would be left half written anyway, stop reading
+        if (runningExport != null) runningExport.cancel();
+        // chunks already written stay; the rest of the file is skipped
+        if (runningImport != null) runningImport.cancel();
+        // finished batches are kept; the next sync resumes after them
+        if (runningSync != null) runningSync.cancel();
+        super.onDestroy();
     }
 
-    private void loadAllHikes() {
-        if (dbHelper == null) dbHelper = new DatabaseHelper(this);
-        allHikes = dbHelper.getAllHikes();
-        adapter = new HikeAdapter(this, allHikes);
-        hikeListView.setAdapter(adapter);
+    private void onHikesChanged(DbChange change) {
+        if (change.getTable() == DbChange.Table.OBSERVATIONS) {
+            // only the observation count of that hike's row changes
+            pendingSummaryIds.add(change.getHikeId());
+            if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+                applyPendingChanges();
+            }
+            return;
+        }
+
+        switch (change.getOp()) {
+            case DELETE:
+                // nothing to read back, drop the rows in place
+                Set<Integer> deleted = new HashSet<>();
+                for (int id : change.getIds()) deleted.add(id);
+                Iterator<Hike> it = allHikes.iterator();
+                while (it.hasNext()) {
+                    if (deleted.contains(it.next().getId())) it.remove();
+                }
+                showHikes();
+                break;
+            case UPDATE:
+                for (int id : change.getIds()) pendingUpdatedIds.add(id);
+                break;
+            default:
+                // inserts can land on any page, and CLEAR empties the list
+                reloadPending = true;
+                break;
+        }
+
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            applyPendingChanges();
+        }
+    }
 
-        if (allHikes == null || allHikes.isEmpty()) {
-            Toast.makeText(this, "No hikes found.", Toast.LENGTH_SHORT).show();
+    private void applyPendingChanges() {
+        if (reloadPending) {
+            reloadPending = false;
+            pendingUpdatedIds.clear();
+            pendingSummaryIds.clear();
+            reloadHikes();
+            return;
+        }
+        if (!pendingUpdatedIds.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(pendingUpdatedIds);
+            pendingUpdatedIds.clear();
+            refreshRows(ids);
+        }
+        if (!pendingSummaryIds.isEmpty()) {
+            List<Integer> ids = new ArrayList<>(pendingSummaryIds);
+            pendingSummaryIds.clear();
+            loadSummaries(ids);
         }
     }
 
+    // Observation counts for the given rows, one grouped query per call
+    private void loadSummaries(List<Integer> hikeIds) {
+        repository.read(this, db -> db.getObservationSummaries(hikeIds), summaries -> {
+            if (summaries != null) adapter.updateObservationSummaries(hikeIds, summaries);
+        });
+    }
+
+    // Re-reads only the edited hikes and swaps them into the loaded list
+    private void refreshRows(List<Integer> ids) {
+        repository.read(this, db -> {
+            Map<Integer, Hike> fresh = new HashMap<>();
+            for (int id : ids) {
+                Hike hike = db.getHike(id);
+                if (hike != null) fresh.put(id, hike);
+            }
+            return fresh;
+        }, fresh -> {
+            if (fresh == null) return;
+            for (int i = 0; i < allHikes.size(); i++) {
+                Hike hike = fresh.get(allHikes.get(i).getId());
+                if (hike != null) allHikes.set(i, hike);
+            }
+            showHikes();
+        });
+    }
+
+    // The differ only sees a list it has not been given before, so hand it a copy
+    private void showHikes() {
+        adapter.submitList(new ArrayList<>(allHikes));
+    }
+
+    // Starts again from the newest hike; the current rows stay visible until page 1 arrives
+    private void reloadHikes() {
+        if (pageTask != null) pageTask.cancel();
+        pageTask = null;
+        lastPageDate = null;
+        lastPageId = 0;
+        hasMorePages = true;
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (pageTask != null || !hasMorePages) return; // a page is already on its way
+
+        boolean firstPage = lastPageId == 0;
+        Long afterDate = lastPageDate;
+        int afterId = lastPageId;
+        pageTask = repository.read(this, db -> db.loadHikesPage(afterDate, afterId, PAGE_SIZE), page -> {
+            pageTask = null;
+            if (page == null) return;
+            if (firstPage) allHikes.clear();
+            allHikes.addAll(page.getHikes());
+            lastPageDate = page.getLastDate();
+            lastPageId = page.getLastId();
+            hasMorePages = page.hasMore();
+            showHikes();
+
+            List<Integer> pageIds = new ArrayList<>();
+            for (Hike hike : page.getHikes()) pageIds.add(hike.getId());
+            loadSummaries(pageIds);
+
+            if (firstPage && allHikes.isEmpty()) {
+                Toast.makeText(this, "No hikes found.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_main, menu);
@@ -121,6 +309,31 @@ public class MainActivity extends AppCompatActivity {
         if (id == R.id.action_search) {
             startActivity(new Intent(this, SearchActivity.class));
             return true;
+        } else if (id == R.id.action_stats) {
+            startActivity(new Intent(this, StatsActivity.class));
+            return true;
+        } else if (id == R.id.action_export_csv) {
+            exportCsvLauncher.launch("mhike-export.csv");
+            return true;
+        } else if (id == R.id.action_export_json) {
+            exportJsonLauncher.launch("mhike-export.jsonl");
+            return true;
+        } else if (id == R.id.action_import) {
+            importLauncher.launch(new String[]{"text/*", "application/json", "application/x-ndjson",
+                    "application/octet-stream"});
+            return true;
+        } else if (id == R.id.action_backup) {
+            backupLauncher.launch("mhike-backup.mhbk");
+            return true;
+        } else if (id == R.id.action_backup_incremental) {
+            incrementalBackupLauncher.launch("mhike-changes.mhbk");
+            return true;
+        } else if (id == R.id.action_restore) {
+            restoreLauncher.launch(new String[]{"application/octet-stream", "*/*"});
+            return true;
+        } else if (id == R.id.action_sync) {
+            syncNow();
+            return true;
         } else if (id == R.id.action_delete_all) {
             confirmDeleteAll();
             return true;
@@ -129,13 +342,191 @@ public class MainActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    private void exportTo(Uri uri, HikeExporter.Format format) {
+        if (uri == null) return; // picker dismissed
+        if (runningExport != null) {
+            Toast.makeText(this, "An export is already running", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        HikeExporter exporter = new HikeExporter();
+        runningExport = exporter;
+        ContentResolver resolver = getContentResolver();
+        Toast.makeText(this, "Exporting...", Toast.LENGTH_SHORT).show();
+        repository.read(this, db -> {
+            try (OutputStream out = resolver.openOutputStream(uri)) {
+                return out != null ? exporter.export(db, out, format, null) : null;
+            } catch (IOException e) {
+                Log.e(TAG, "export error", e);
+                return null;
+            }
+        }, result -> {
+            runningExport = null;
+            if (result == null) {
+                Toast.makeText(this, "Export failed", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Exported " + result.getHikes() + " hikes and " +
+                        result.getObservations() + " observations", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void confirmImport(Uri uri) {
+        if (uri == null) return; // picker dismissed
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Import Hikes")
+                .setMessage("Hikes already in the logbook and invalid rows are skipped.")
+                .setPositiveButton("Import", (dialog, which) -> importFrom(uri, false))
+                .setNeutralButton("Check only", (dialog, which) -> importFrom(uri, true))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void importFrom(Uri uri, boolean dryRun) {
+        if (runningImport != null) {
+            Toast.makeText(this, "An import is already running", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        HikeImporter importer = new HikeImporter();
+        runningImport = importer;
+        ContentResolver resolver = getContentResolver();
+        HikeExporter.Format format = importFormat(resolver, uri);
+        Toast.makeText(this, dryRun ? "Checking..." : "Importing...", Toast.LENGTH_SHORT).show();
+        HikeRepository.Query<HikeImporter.Result> work = db -> {
+            try (InputStream in = resolver.openInputStream(uri)) {
+                // a real import parses here and hands the writer one chunk at a time
+                return in != null ? importer.importFrom(db, dryRun ? null : repository, in, format, dryRun) : null;
+            } catch (IOException e) {
+                Log.e(TAG, "import error", e);
+                return null;
+            }
+        };
+        HikeRepository.Callback<HikeImporter.Result> done = result -> {
+            runningImport = null;
+            if (result == null) {
+                Toast.makeText(this, "Import failed", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String summary = (dryRun ? "Would import " : "Imported ") + result.getHikes() + " hikes, " +
+                    result.getObservations() + " observations; skipped " + result.getDuplicates() +
+                    " duplicates, " + result.getInvalid() + " invalid";
+            if (!result.getErrors().isEmpty()) summary += "\n" + result.getErrors().get(0);
+            Toast.makeText(this, summary, Toast.LENGTH_LONG).show();
+        };
+        // a check writes nothing, so it can share the reader pool
+        if (dryRun) repository.read(this, work, done);
+        else repository.writeInSteps(this, work, done);
+    }
+
+    // JSON lines by type or extension, otherwise CSV
+    private static HikeExporter.Format importFormat(ContentResolver resolver, Uri uri) {
+        String type = resolver.getType(uri);
+        String path = uri.getLastPathSegment();
+        boolean json = (type != null && type.contains("json")) ||
+                (path != null && (path.endsWith(".jsonl") || path.endsWith(".json") || path.endsWith(".ndjson")));
+        return json ? HikeExporter.Format.JSON_LINES : HikeExporter.Format.CSV;
+    }
+
+    // incremental covers changes since the last backup, and falls back to full without one
+    private void backupTo(Uri uri, boolean incremental) {
+        if (uri == null) return; // picker dismissed
+        SharedPreferences prefs = getSharedPreferences(BACKUP_PREFS, MODE_PRIVATE);
+        long sinceSeq = incremental ? prefs.getLong(PREF_BACKUP_SEQ, 0) : 0;
+        ContentResolver resolver = getContentResolver();
+        File dbFile = getDatabasePath(DatabaseHelper.getInstance(this).getDatabaseName());
+        Toast.makeText(this, "Backing up...", Toast.LENGTH_SHORT).show();
+        // reads a snapshot on its own connection, so writes go on meanwhile
+        repository.read(this, db -> {
+            try (OutputStream out = resolver.openOutputStream(uri)) {
+                return out != null ? new HikeBackup().backup(db, out, sinceSeq, true) : null;
+            } catch (IOException e) {
+                Log.e(TAG, "backup error", e);
+                return null;
+            }
+        }, result -> {
+            if (result == null) {
+                Toast.makeText(this, "Backup failed", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            prefs.edit().putLong(PREF_BACKUP_SEQ, result.getUntilSeq()).apply();
+            Log.i(TAG, "backup " + result.getBytes() + " bytes vs database file " + dbFile.length() + " bytes");
+            Toast.makeText(this, "Backed up " + result.getHikes() + " hikes and " + result.getObservations() +
+                    " observations (" + (result.getBytes() + 1023) / 1024 + " KB)", Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private void confirmRestore(Uri uri) {
+        if (uri == null) return; // picker dismissed
+        new androidx.appcompat.app.AlertDialog.Builder(this)
+                .setTitle("Restore Backup")
+                .setMessage("A full backup replaces all hikes; a changes backup is applied on top of them.")
+                .setPositiveButton("Restore", (dialog, which) -> restoreFrom(uri))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void restoreFrom(Uri uri) {
+        ContentResolver resolver = getContentResolver();
+        Toast.makeText(this, "Restoring...", Toast.LENGTH_SHORT).show();
+        // the CLEAR change event reloads the list
+        repository.write(this, db -> {
+            try (InputStream in = resolver.openInputStream(uri)) {
+                return in != null ? new HikeBackup().restore(db, in) : null;
+            } catch (IOException e) {
+                Log.e(TAG, "restore error", e);
+                return null;
+            }
+        }, result -> Toast.makeText(this, result == null ? "Restore failed" :
+                "Restored " + result.getHikes() + " hikes and " + result.getObservations() + " observations",
+                Toast.LENGTH_SHORT).show());
+    }
+
+    private void syncNow() {
+        if (runningSync != null) {
+            Toast.makeText(this, "A sync is already running", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        HikeSync sync = new HikeSync();
+        runningSync = sync;
+        HttpSyncTransport transport = new HttpSyncTransport(getString(R.string.sync_url));
+        Toast.makeText(this, "Syncing...", Toast.LENGTH_SHORT).show();
+        // pulled rows arrive as a CLEAR change event, which reloads the list
+        repository.sync(this, sync, transport, result -> {
+            runningSync = null;
+            if (result == null) {
+                Toast.makeText(this, "Sync failed, it will resume from here next time", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Sent " + result.getPushed() + ", received " + result.getPulled() +
+                        (result.getConflicts() > 0 ? ", " + result.getConflicts() + " replaced by newer copies" : ""),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    // hikes stay tombstoned while the snackbar shows, and are purged once it goes away
+    private void offerUndoDelete(long stamp) {
+        Snackbar.make(hikeListView, "All hikes deleted", Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> repository.write(this, db -> db.undoDelete(stamp), null))
+                .addCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onDismissed(Snackbar snackbar, int event) {
+                        if (event != DISMISS_EVENT_ACTION) repository.purgeDeleted(stamp);
+                    }
+                })
+                .show();
+    }
+
     private void confirmDeleteAll() {
         new androidx.appcompat.app.AlertDialog.Builder(this)
                 .setTitle("Delete All Hikes")
                 .setMessage("Are you sure?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    dbHelper.deleteAllHikes();
-                    loadAllHikes();
+                    // the CLEAR change event reloads the list
+                    repository.write(this, db -> db.deleteAllHikes(), stamp -> {
+                        if (stamp != null && stamp > 0) offerUndoDelete(stamp);
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
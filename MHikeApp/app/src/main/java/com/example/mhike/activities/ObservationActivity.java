@@ -9,29 +9,32 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mhike.R;
 import com.example.mhike.adapters.ObservationAdapter;
-import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.HikeRepository;
 import com.example.mhike.models.Observation;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 
 public class ObservationActivity extends AppCompatActivity {
 
-    private ListView observationListView;
+    private RecyclerView observationListView;
     private ObservationAdapter adapter;
-    private DatabaseHelper dbHelper;
-    private List<Observation> allObservations;
+    private HikeRepository repository;
+    private List<Observation> allObservations = new ArrayList<>();
     private int hikeIdentifier;
     private String hikeName;
     private TextView emptyMessage;
@@ -56,23 +59,29 @@ public class ObservationActivity extends AppCompatActivity {
         emptyMessage = findViewById(R.id.emptyMessage);
         Button btnAddObservation = findViewById(R.id.btnAddObservation);
 
-        // Database helper
-        dbHelper = new DatabaseHelper(this);
+        // Database (all calls run off the main thread)
+        repository = HikeRepository.getInstance(this);
 
         // Add Observation button
         btnAddObservation.setOnClickListener(v -> openAddDialog());
 
         // List item click
-        observationListView.setOnItemClickListener((parent, view, position, id) -> {
-            Observation obs = allObservations.get(position);
-            showOptionsDialog(obs);
-        });
-
-        loadAllObservations();
+        adapter = new ObservationAdapter(this::showOptionsDialog);
+        observationListView.setLayoutManager(new LinearLayoutManager(this));
+        observationListView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        observationListView.setAdapter(adapter);
+
+        // Loads now, then again only when this hike's observations change
+        repository.observeQuery(this,
+                change -> change.affectsObservationsOf(hikeIdentifier),
+                db -> db.getObservationsByHike(hikeIdentifier),
+                result -> {
+                    if (result != null) showObservations(result);
+                });
     }
 
-    private void loadAllObservations() {
-        allObservations = dbHelper.getObservationsByHike(hikeIdentifier);
+    private void showObservations(List<Observation> observations) {
+        allObservations = observations;
 
         if (allObservations.isEmpty()) {
             emptyMessage.setVisibility(View.VISIBLE);
@@ -80,9 +89,8 @@ public class ObservationActivity extends AppCompatActivity {
         } else {
             emptyMessage.setVisibility(View.GONE);
             observationListView.setVisibility(View.VISIBLE);
-            adapter = new ObservationAdapter(this, allObservations);
-            observationListView.setAdapter(adapter);
         }
+        adapter.submitList(allObservations);
     }
 
     private void openAddDialog() {
@@ -114,14 +122,13 @@ public class ObservationActivity extends AppCompatActivity {
                     }
 
                     Observation obs = new Observation(hikeIdentifier, obsText, obsTime, obsComments);
-                    long result = dbHelper.addObservation(obs);
-
-                    if (result > 0) {
-                        Toast.makeText(this, "Observation added", Toast.LENGTH_SHORT).show();
-                        loadAllObservations();
-                    } else {
-                        Toast.makeText(this, "Failed to add observation", Toast.LENGTH_SHORT).show();
-                    }
+                    repository.write(this, db -> db.addObservation(obs), result -> {
+                        if (result != null && result > 0) {
+                            Toast.makeText(this, "Observation added", Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(this, "Failed to add observation", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -218,18 +225,18 @@ public class ObservationActivity extends AppCompatActivity {
                         return;
                     }
 
-                    obs.setObservationText(obsText);
-                    obs.setTime(obsTime);
-                    obs.setComments(obsComments);
-
-                    int result = dbHelper.updateObservation(obs);
-
-                    if (result > 0) {
-                        Toast.makeText(this, "Observation updated", Toast.LENGTH_SHORT).show();
-                        loadAllObservations();
-                    } else {
-                        Toast.makeText(this, "Failed to update observation", Toast.LENGTH_SHORT).show();
-                    }
+                    // edit a copy: obs is the row the list and the cache hold, and the list
+                    // only rebinds when the re-queried row differs from it
+                    Observation edited = new Observation(obs.getHikeId(), obsText, obsTime, obsComments);
+                    edited.setId(obs.getId());
+
+                    repository.write(this, db -> db.updateObservation(edited), result -> {
+                        if (result != null && result > 0) {
+                            Toast.makeText(this, "Observation updated", Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(this, "Failed to update observation", Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -240,9 +247,10 @@ public class ObservationActivity extends AppCompatActivity {
                 .setTitle("Delete Observation")
                 .setMessage("Are you sure you want to delete this observation?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    dbHelper.deleteObservation(obs.getId());
-                    Toast.makeText(this, "Observation deleted", Toast.LENGTH_SHORT).show();
-                    loadAllObservations();
+                    repository.write(this, db -> {
+                        db.deleteObservation(obs.getId());
+                        return null;
+                    }, ignored -> Toast.makeText(this, "Observation deleted", Toast.LENGTH_SHORT).show());
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -2,11 +2,16 @@ package com.example.mhike.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
@@ -14,30 +19,48 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mhike.R;
 import com.example.mhike.adapters.HikeAdapter;
-import com.example.mhike.database.DatabaseHelper;
+import com.example.mhike.database.DbChange;
+import com.example.mhike.database.HikeRepository;
+import com.example.mhike.database.IncrementalSearch;
 import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeMatch;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class SearchActivity extends AppCompatActivity {
 
+    private static final String TAG = "SearchActivity";
+    private static final int MAX_SIMPLE_RESULTS = 100;
+    private static final int MAX_FUZZY_RESULTS = 20;
+    // typing pause before a live search is sent
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
     private RadioGroup searchTypeGroup;
     private RadioButton simpleSearchOption, advancedSearchOption;
     private EditText simpleSearchInput, searchNameInput, searchLocationInput;
     private EditText searchDistanceInput, searchDateInput;
     private Button performSearchButton;
-    private ListView resultsListView;
+    private RecyclerView resultsListView;
     private TextView noResultsMessage;
     private View simpleSearchLayout, advancedSearchLayout;
 
-    private DatabaseHelper dbHelper;
+    private HikeRepository repository;
+    private HikeRepository.Task searchTask;
     private HikeAdapter adapter;
     private List<Hike> foundHikes;
 
+    private final Handler debounceHandler = new Handler(Looper.getMainLooper());
+    private final Runnable liveSearch = this::runLiveSearch;
+    private final IncrementalSearch incrementalSearch = new IncrementalSearch(MAX_SIMPLE_RESULTS);
+    private long keystrokeAt;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,8 +75,8 @@ public class SearchActivity extends AppCompatActivity {
         // Initialize views
         setupViews();
 
-        // Initialize database helper
-        dbHelper = new DatabaseHelper(this);
+        // Database (all calls run off the main thread)
+        repository = HikeRepository.getInstance(this);
 
         // Setup radio group listener
         searchTypeGroup.setOnCheckedChangeListener((group, checkedId) -> {
@@ -70,13 +93,36 @@ public class SearchActivity extends AppCompatActivity {
         // Setup search button
         performSearchButton.setOnClickListener(v -> executeSearch());
 
-        // Setup ListView click listener
-        resultsListView.setOnItemClickListener((parent, view, position, id) -> {
-            Hike selectedHike = foundHikes.get(position);
+        // Live search while typing
+        simpleSearchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchTextChanged();
+            }
+        });
+
+        // Remembered results are only valid until a hike changes
+        repository.observe(this, change -> {
+            if (change.getTable() == DbChange.Table.HIKES) incrementalSearch.reset();
+        });
+
+        // Setup results list and click listener
+        adapter = new HikeAdapter(selectedHike -> {
             Intent intent = new Intent(SearchActivity.this, HikeDetailActivity.class);
             intent.putExtra("hike", selectedHike);
             startActivity(intent);
         });
+        resultsListView.setLayoutManager(new LinearLayoutManager(this));
+        resultsListView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        resultsListView.setAdapter(adapter);
     }
 
     private void setupViews() {
@@ -114,8 +160,77 @@ public class SearchActivity extends AppCompatActivity {
             return;
         }
 
-        foundHikes = dbHelper.searchHikesByName(keyword);
-        showSearchResults();
+        debounceHandler.removeCallbacks(liveSearch);
+        keystrokeAt = SystemClock.uptimeMillis();
+        searchText(keyword, true);
+    }
+
+    private void onSearchTextChanged() {
+        debounceHandler.removeCallbacks(liveSearch);
+        if (!simpleSearchOption.isChecked()) return;
+
+        // whatever is in flight is for text that is no longer there
+        if (searchTask != null) searchTask.cancel();
+        searchTask = null;
+        keystrokeAt = SystemClock.uptimeMillis();
+
+        if (simpleSearchInput.getText().toString().trim().isEmpty()) {
+            clearSearchResults();
+        } else {
+            debounceHandler.postDelayed(liveSearch, SEARCH_DEBOUNCE_MS);
+        }
+    }
+
+    private void runLiveSearch() {
+        String keyword = simpleSearchInput.getText().toString().trim();
+        if (!keyword.isEmpty()) searchText(keyword, false);
+    }
+
+    // A longer version of the last complete query is filtered in memory, anything else asks the index.
+    // An empty refinement still goes to the reader, so it gets the same fuzzy fallback as a fresh query.
+    private void searchText(String keyword, boolean announce) {
+        long startedAt = SystemClock.uptimeMillis();
+        List<Hike> refined = incrementalSearch.refine(keyword);
+        if (refined != null && !refined.isEmpty()) {
+            if (searchTask != null) searchTask.cancel();
+            searchTask = null;
+            foundHikes = refined;
+            showSearchResults(announce);
+            logLatency(keyword, "memory", startedAt);
+            return;
+        }
+
+        // set on the reader thread, read in the callback it posts
+        boolean[] typoMatches = new boolean[1];
+        runSearch(db -> {
+            List<HikeMatch> matches = db.fullTextSearch(keyword, MAX_SIMPLE_RESULTS, 0);
+            if (matches.isEmpty()) {
+                // nothing starts with what was typed, try close spellings instead
+                matches = db.fuzzySearchHikes(keyword, MAX_FUZZY_RESULTS);
+                typoMatches[0] = true;
+            }
+            List<Hike> hikes = new ArrayList<>();
+            for (HikeMatch match : matches) {
+                hikes.add(match.getHike());
+            }
+            return hikes;
+        }, announce, result -> {
+            if (typoMatches[0]) {
+                // a longer query may still match exactly, so these are not reused
+                incrementalSearch.reset();
+                logLatency(keyword, "fuzzy", startedAt);
+            } else {
+                incrementalSearch.remember(keyword, result);
+                logLatency(keyword, "fts", startedAt);
+            }
+        });
+    }
+
+    // query time, and time since the keystroke including the debounce wait
+    private void logLatency(String keyword, String source, long startedAt) {
+        long now = SystemClock.uptimeMillis();
+        Log.d(TAG, "search '" + keyword + "' " + foundHikes.size() + " results from " + source +
+                " in " + (now - startedAt) + " ms, " + (now - keystrokeAt) + " ms after keystroke");
     }
 
     private void doAdvancedSearch() {
@@ -129,30 +244,51 @@ public class SearchActivity extends AppCompatActivity {
             return;
         }
 
-        foundHikes = dbHelper.advancedSearch(name, location, distance, date);
-        showSearchResults();
+        runSearch(db -> db.advancedSearch(name, location, distance, date), true, null);
     }
 
-    private void showSearchResults() {
+    // Only the latest search may show its results
+    private void runSearch(HikeRepository.Query<List<Hike>> query, boolean announce,
+                           HikeRepository.Callback<List<Hike>> onShown) {
+        if (searchTask != null) searchTask.cancel();
+        searchTask = repository.read(this, query, result -> {
+            searchTask = null;
+            foundHikes = result != null ? result : new ArrayList<>();
+            showSearchResults(announce);
+            if (onShown != null) onShown.onResult(foundHikes);
+        });
+    }
+
+    // live searches update the list quietly, without a toast per keystroke
+    private void showSearchResults(boolean announce) {
+        adapter.submitList(foundHikes);
         if (foundHikes.isEmpty()) {
             noResultsMessage.setVisibility(View.VISIBLE);
             resultsListView.setVisibility(View.GONE);
-            Toast.makeText(this, "No results found", Toast.LENGTH_SHORT).show();
+            if (announce) Toast.makeText(this, "No results found", Toast.LENGTH_SHORT).show();
         } else {
             noResultsMessage.setVisibility(View.GONE);
             resultsListView.setVisibility(View.VISIBLE);
-            adapter = new HikeAdapter(this, foundHikes);
-            resultsListView.setAdapter(adapter);
-            Toast.makeText(this, foundHikes.size() + " result(s) found", Toast.LENGTH_SHORT).show();
+            if (announce) Toast.makeText(this, foundHikes.size() + " result(s) found", Toast.LENGTH_SHORT).show();
         }
     }
 
     private void clearSearchResults() {
+        debounceHandler.removeCallbacks(liveSearch);
+        if (searchTask != null) searchTask.cancel();
+        searchTask = null;
         foundHikes = new ArrayList<>();
+        adapter.submitList(foundHikes);
         noResultsMessage.setVisibility(View.GONE);
         resultsListView.setVisibility(View.GONE);
     }
 
+    @Override
+    protected void onDestroy() {
+        debounceHandler.removeCallbacks(liveSearch);
+        super.onDestroy();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -0,0 +1,77 @@
+package com.example.mhike.activities;
+
+import android.os.Bundle;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import com.example.mhike.R;
+import com.example.mhike.database.HikeRepository;
+import com.example.mhike.models.HikeStats;
+
+import java.util.Locale;
+import java.util.Map;
+
+public class StatsActivity extends AppCompatActivity {
+
+    private TextView totalHikesDisplay, totalDistanceDisplay, totalObservationsDisplay;
+    private TextView difficultyDisplay, locationDisplay, monthDisplay;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        // Setup toolbar
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        getSupportActionBar().setTitle("Statistics");
+
+        // Initialize views
+        totalHikesDisplay = findViewById(R.id.totalHikesDisplay);
+        totalDistanceDisplay = findViewById(R.id.totalDistanceDisplay);
+        totalObservationsDisplay = findViewById(R.id.totalObservationsDisplay);
+        difficultyDisplay = findViewById(R.id.difficultyDisplay);
+        locationDisplay = findViewById(R.id.locationDisplay);
+        monthDisplay = findViewById(R.id.monthDisplay);
+
+        // Loads now, then again after any change to hikes or observations
+        HikeRepository.getInstance(this).observeQuery(this,
+                change -> true,
+                db -> db.getHikeStats(),
+                stats -> {
+                    if (stats != null) showStats(stats);
+                });
+    }
+
+    private void showStats(HikeStats stats) {
+        totalHikesDisplay.setText(String.valueOf(stats.getTotalHikes()));
+        totalDistanceDisplay.setText(String.format(Locale.getDefault(), "%.1f km", stats.getTotalDistance()));
+        totalObservationsDisplay.setText(String.valueOf(stats.getTotalObservations()));
+        difficultyDisplay.setText(formatCounts(stats.getHikesByDifficulty()));
+        locationDisplay.setText(formatCounts(stats.getHikesByLocation()));
+        monthDisplay.setText(formatCounts(stats.getHikesByMonth()));
+    }
+
+    private String formatCounts(Map<String, Integer> counts) {
+        if (counts.isEmpty()) return "-";
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
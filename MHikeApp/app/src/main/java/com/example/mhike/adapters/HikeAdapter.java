@@ -1,73 +1,132 @@
 package com.example.mhike.adapters;
 
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.mhike.R;
 import com.example.mhike.models.Hike;
+import com.example.mhike.models.ObservationSummary;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class HikeAdapter extends RecyclerView.Adapter<HikeAdapter.ViewData> {
+
+    public interface OnHikeClickListener {
+        void onHikeClick(Hike hike);
+    }
+
+    // only the fields shown in item_hike decide whether a row is rebound
+    private static final DiffUtil.ItemCallback<Hike> DIFF = new DiffUtil.ItemCallback<Hike>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Hike oldHike, @NonNull Hike newHike) {
+            return oldHike.getId() == newHike.getId();
+        }
 
-public class HikeAdapter extends BaseAdapter {
+        @Override
+        public boolean areContentsTheSame(@NonNull Hike oldHike, @NonNull Hike newHike) {
+            return Objects.equals(oldHike.getName(), newHike.getName())
+                    && Objects.equals(oldHike.getLocation(), newHike.getLocation())
+                    && Objects.equals(oldHike.getDate(), newHike.getDate())
+                    && Objects.equals(oldHike.getDifficulty(), newHike.getDifficulty());
+        }
+    };
 
-    private Context ctx;
-    private List<Hike> hikesList;
-    private LayoutInflater layoutInflater;
+    // diffs are computed on a background thread, then dispatched as item updates
+    private final AsyncListDiffer<Hike> differ = new AsyncListDiffer<>(this, DIFF);
+    private final OnHikeClickListener clickListener;
+    // observation count per hike id, filled in after the rows themselves
+    private final Map<Integer, ObservationSummary> summaries = new HashMap<>();
 
-    public HikeAdapter(Context ctx, List<Hike> hikesList) {
-        this.ctx = ctx;
-        this.hikesList = hikesList;
-        this.layoutInflater = LayoutInflater.from(ctx);
+    public HikeAdapter(OnHikeClickListener clickListener) {
+        this.clickListener = clickListener;
+        setHasStableIds(true);
     }
 
-    @Override
-    public int getCount() {
-        return hikesList.size();
+    // pass a new list each time; the differ ignores a list it has already seen
+    public void submitList(List<Hike> hikes) {
+        differ.submitList(hikes);
+    }
+
+    /** Replaces the summaries of the given hikes; a hike missing from fresh has none. */
+    public void updateObservationSummaries(Collection<Integer> hikeIds, Map<Integer, ObservationSummary> fresh) {
+        for (int id : hikeIds) {
+            ObservationSummary summary = fresh.get(id);
+            if (summary != null) summaries.put(id, summary);
+            else summaries.remove(id);
+        }
+        List<Hike> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (hikeIds.contains(current.get(i).getId())) notifyItemChanged(i);
+        }
     }
 
     @Override
-    public Object getItem(int position) {
-        return hikesList.get(position);
+    public int getItemCount() {
+        return differ.getCurrentList().size();
     }
 
     @Override
     public long getItemId(int position) {
-        return hikesList.get(position).getId();
+        return differ.getCurrentList().get(position).getId();
     }
 
+    @NonNull
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewData viewData;
-
-        if (convertView == null) {
-            convertView = layoutInflater.inflate(R.layout.item_hike, parent, false);
-            viewData = new ViewData();
-            viewData.nameText = convertView.findViewById(R.id.hikeNameText);
-            viewData.locationText = convertView.findViewById(R.id.hikeLocationText);
-            viewData.dateText = convertView.findViewById(R.id.hikeDateText);
-            viewData.difficultyText = convertView.findViewById(R.id.hikeDifficultyText);
-            convertView.setTag(viewData);
-        } else {
-            viewData = (ViewData) convertView.getTag();
-        }
+    public ViewData onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_hike, parent, false);
+        ViewData viewData = new ViewData(itemView);
+        itemView.setOnClickListener(v -> {
+            int position = viewData.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && clickListener != null) {
+                clickListener.onHikeClick(differ.getCurrentList().get(position));
+            }
+        });
+        return viewData;
+    }
 
-        Hike hike = hikesList.get(position);
+    @Override
+    public void onBindViewHolder(@NonNull ViewData viewData, int position) {
+        Hike hike = differ.getCurrentList().get(position);
         viewData.nameText.setText(hike.getName());
         viewData.locationText.setText(hike.getLocation());
         viewData.dateText.setText(hike.getDate());
         viewData.difficultyText.setText(hike.getDifficulty());
 
-        return convertView;
+        ObservationSummary summary = summaries.get(hike.getId());
+        if (summary == null) {
+            viewData.obsCountText.setText("");
+        } else {
+            String text = summary.getCount() + (summary.getCount() == 1 ? " observation" : " observations");
+            if (summary.getLastTime() != null) text += ", last " + summary.getLastTime();
+            viewData.obsCountText.setText(text);
+        }
     }
 
-    static class ViewData {
+    static class ViewData extends RecyclerView.ViewHolder {
         TextView nameText;
         TextView locationText;
         TextView dateText;
         TextView difficultyText;
+        TextView obsCountText;
+
+        ViewData(@NonNull View itemView) {
+            super(itemView);
+            nameText = itemView.findViewById(R.id.hikeNameText);
+            locationText = itemView.findViewById(R.id.hikeLocationText);
+            dateText = itemView.findViewById(R.id.hikeDateText);
+            difficultyText = itemView.findViewById(R.id.hikeDifficultyText);
+            obsCountText = itemView.findViewById(R.id.hikeObsCountText);
+        }
     }
 }
@@ -1,67 +1,93 @@
 package com.example.mhike.adapters;
 
-import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.mhike.R;
 import com.example.mhike.models.Observation;
 
 import java.util.List;
+import java.util.Objects;
+
+public class ObservationAdapter extends RecyclerView.Adapter<ObservationAdapter.ViewData> {
+
+    public interface OnObservationClickListener {
+        void onObservationClick(Observation obs);
+    }
 
-public class ObservationAdapter extends BaseAdapter {
+    // only the fields shown in item_observation decide whether a row is rebound
+    private static final DiffUtil.ItemCallback<Observation> DIFF = new DiffUtil.ItemCallback<Observation>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Observation oldObs, @NonNull Observation newObs) {
+            return oldObs.getId() == newObs.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Observation oldObs, @NonNull Observation newObs) {
+            return Objects.equals(oldObs.getObservationText(), newObs.getObservationText())
+                    && Objects.equals(oldObs.getTime(), newObs.getTime());
+        }
+    };
 
-    private Context ctx;
-    private List<Observation> obsList;
-    private LayoutInflater layoutInflater;
+    private final AsyncListDiffer<Observation> differ = new AsyncListDiffer<>(this, DIFF);
+    private final OnObservationClickListener clickListener;
 
-    public ObservationAdapter(Context ctx, List<Observation> obsList) {
-        this.ctx = ctx;
-        this.obsList = obsList;
-        this.layoutInflater = LayoutInflater.from(ctx);
+    public ObservationAdapter(OnObservationClickListener clickListener) {
+        this.clickListener = clickListener;
+        setHasStableIds(true);
     }
 
-    @Override
-    public int getCount() {
-        return obsList.size();
+    // pass a new list each time; the differ ignores a list it has already seen
+    public void submitList(List<Observation> observations) {
+        differ.submitList(observations);
     }
 
     @Override
-    public Object getItem(int position) {
-        return obsList.get(position);
+    public int getItemCount() {
+        return differ.getCurrentList().size();
     }
 
     @Override
     public long getItemId(int position) {
-        return obsList.get(position).getId();
+        return differ.getCurrentList().get(position).getId();
     }
 
+    @NonNull
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewData viewData;
-
-        if (convertView == null) {
-            convertView = layoutInflater.inflate(R.layout.item_observation, parent, false);
-            viewData = new ViewData();
-            viewData.obsText = convertView.findViewById(R.id.obsText);
-            viewData.timeText = convertView.findViewById(R.id.obsTimeText);
-            convertView.setTag(viewData);
-        } else {
-            viewData = (ViewData) convertView.getTag();
-        }
+    public ViewData onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_observation, parent, false);
+        ViewData viewData = new ViewData(itemView);
+        itemView.setOnClickListener(v -> {
+            int position = viewData.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && clickListener != null) {
+                clickListener.onObservationClick(differ.getCurrentList().get(position));
+            }
+        });
+        return viewData;
+    }
 
-        Observation obs = obsList.get(position);
+    @Override
+    public void onBindViewHolder(@NonNull ViewData viewData, int position) {
+        Observation obs = differ.getCurrentList().get(position);
         viewData.obsText.setText(obs.getObservationText());
         viewData.timeText.setText(obs.getTime());
-
-        return convertView;
     }
 
-    static class ViewData {
+    static class ViewData extends RecyclerView.ViewHolder {
         TextView obsText;
         TextView timeText;
+
+        ViewData(@NonNull View itemView) {
+            super(itemView);
+            obsText = itemView.findViewById(R.id.obsText);
+            timeText = itemView.findViewById(R.id.obsTimeText);
+        }
     }
 }
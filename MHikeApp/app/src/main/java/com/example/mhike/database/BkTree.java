@@ -0,0 +1,74 @@
+package com.example.mhike.database;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Burkhard-Keller tree of words under Levenshtein distance. A lookup only visits
+ * children whose edge distance is within radius of the query's distance to the
+ * parent, so most of the vocabulary is never compared. Plain Java, so it is unit
+ * tested on the JVM.
+ */
+final class BkTree {
+
+    interface Visitor {
+        void visit(String word, int distance);
+    }
+
+    private static final class Node {
+        final String word;
+        // by edge distance, so a lookup can take just the range it needs
+        final TreeMap<Integer, Node> children = new TreeMap<>();
+
+        Node(String word) {
+            this.word = word;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = EditDistance.levenshtein(word, node.word);
+            if (d == 0) return; // already present
+            Node child = node.children.get(d);
+            if (child == null) {
+                node.children.put(d, new Node(word));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /** Calls the visitor for every word within radius of the query. */
+    void search(String query, int radius, Visitor visitor) {
+        if (root == null) return;
+        search(root, query, radius, visitor);
+    }
+
+    private void search(Node node, String query, int radius, Visitor visitor) {
+        int d = EditDistance.levenshtein(query, node.word);
+        if (d <= radius) visitor.visit(node.word, d);
+        // triangle inequality: only edges in [d - radius, d + radius] can hold matches
+        for (Map.Entry<Integer, Node> child : node.children.subMap(d - radius, true, d + radius, true).entrySet()) {
+            search(child.getValue(), query, radius, visitor);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        root = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mhike.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * change_log: the latest change to every hike and observation row, stamped with a
+ * database-wide counter (seq) by triggers. A row keeps one entry however often it
+ * changes, so "everything changed after seq N" is an index range scan whose size
+ * depends on the changes, not on the table. Deleted rows stay as 'D' entries.
+ */
+final class ChangeLogTable {
+
+    static final String TABLE = "change_log";
+
+    static final String OP_INSERT = "I";
+    static final String OP_UPDATE = "U";
+    static final String OP_DELETE = "D";
+
+    private ChangeLogTable() {
+    }
+
+    /** Creates the table and its triggers; rows already stored are logged as inserts at seq 1. */
+    static void create(SQLiteDatabase db, String hikesTable, String obsTable) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + "(" +
+                "tbl TEXT NOT NULL," +
+                "row_id INTEGER NOT NULL," +
+                "op TEXT NOT NULL," +
+                "seq INTEGER NOT NULL," +
+                "PRIMARY KEY(tbl, row_id)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE + "_seq ON " + TABLE + "(seq)");
+
+        for (String table : new String[]{hikesTable, obsTable}) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_" + table + "_ai AFTER INSERT ON " + table +
+                    " BEGIN " + log(table, "new", OP_INSERT) + " END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_" + table + "_au AFTER UPDATE ON " + table +
+                    " BEGIN " + log(table, "new", OP_UPDATE) + " END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_" + table + "_ad AFTER DELETE ON " + table +
+                    " BEGIN " + log(table, "old", OP_DELETE) + " END");
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE + "(tbl, row_id, op, seq) SELECT '" + table +
+                    "', id, '" + OP_INSERT + "', 1 FROM " + table);
+        }
+    }
+
+    // the seq index makes MAX(seq) a single lookup
+    static String currentSeqSql() {
+        return "SELECT IFNULL(MAX(seq), 0) FROM " + TABLE;
+    }
+
+    // REPLACE drops the row's previous entry, so the log holds one entry per row
+    private static String log(String table, String row, String op) {
+        return "INSERT OR REPLACE INTO " + TABLE + "(tbl, row_id, op, seq) VALUES ('" + table + "', " +
+                row + ".id, '" + op + "', (" + currentSeqSql() + ") + 1); ";
+    }
+}
@@ -3,18 +3,40 @@ package com.example.mhike.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeMatch;
+import com.example.mhike.models.HikeStats;
 import com.example.mhike.models.Observation;
+import com.example.mhike.models.ObservationSummary;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
@@ -23,7 +45,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // Database Info
     private static final String DB_NAME = "mhike.db";
     // bumped to 5 so onUpgrade runs to add missing columns
-    private static final int DB_VERSION = 5;
+    // bumped to 6 for the hike_id/time and date indexes
+    // bumped to 7 for the hikes_fts full-text index
+    // bumped to 8 for the sortable date_epoch_day / time_epoch_ms columns
+    // bumped to 9 for the trigger-maintained hike_stats summary table
+    // bumped to 10 for the change_log table behind incremental backups
+    // bumped to 11 for the sync_rows / sync_state tables
+    // bumped to 12 for soft-deleted (tombstoned) hikes
+    private static final int DB_VERSION = 12;
+
+    // WAL tuning: NORMAL is durable across app crashes in WAL mode and avoids an fsync
+    // per commit; the auto checkpoint bounds the -wal file (in pages, SQLite default 1000)
+    private static final String WAL_SYNCHRONOUS = "NORMAL";
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
 
     // Hikes Table & expected columns
     private static final String HIKES_TABLE = "hikes";
@@ -37,6 +71,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL_HIKE_INFO = "description";
     private static final String COL_HIKE_WEATHER = "weather";
     private static final String COL_HIKE_TEAM = "group_size";
+    private static final String COL_HIKE_DATE_EPOCH = "date_epoch_day"; // parsed from date, for sorting/ranges
+    private static final String COL_HIKE_DELETED_AT = "deleted_at"; // tombstone stamp, NULL while live
+
+    // every read of hikes filters on this; the partial indexes below cover it
+    private static final String LIVE = COL_HIKE_DELETED_AT + " IS NULL";
 
     // Observations Table & columns
     private static final String OBS_TABLE = "observations";
@@ -45,6 +84,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL_OBS_CONTENT = "observation_text";
     private static final String COL_OBS_TIMESTAMP = "time"; // primary name used in code
     private static final String COL_OBS_NOTES = "comments";
+    private static final String COL_OBS_TIME_EPOCH = "time_epoch_ms"; // parsed from time
+
+    // newest first; undated (NULL) hikes sort last, id keeps the order stable
+    static final String HIKE_ORDER_BY = COL_HIKE_DATE_EPOCH + " DESC, " + COL_ID + " DESC";
 
     // Create statements
     // For new installs: create both time and timestamp columns to avoid future ambiguity
@@ -59,7 +102,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COL_HIKE_LEVEL + " TEXT NOT NULL," +
                     COL_HIKE_INFO + " TEXT," +
                     COL_HIKE_WEATHER + " TEXT," +
-                    COL_HIKE_TEAM + " INTEGER" +
+                    COL_HIKE_TEAM + " INTEGER," +
+                    COL_HIKE_DATE_EPOCH + " INTEGER," +
+                    COL_HIKE_DELETED_AT + " INTEGER" +
                     ")";
 
     private static final String CREATE_OBS_SQL =
@@ -70,24 +115,136 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     "time TEXT NOT NULL," +                 // primary time column
                     "timestamp TEXT NOT NULL," +            // duplicate variant to support legacy names
                     COL_OBS_NOTES + " TEXT," +
+                    COL_OBS_TIME_EPOCH + " INTEGER," +
                     "FOREIGN KEY(" + COL_HIKE_REF + ") REFERENCES " +
                     HIKES_TABLE + "(" + COL_ID + ") ON DELETE CASCADE" +
                     ")";
 
-    public DatabaseHelper(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+    // observations are always read per hike ordered by time, and the FK cascade on
+    // deleteHike looks rows up by hike_id; the hike list is ordered by date
+    private static final String CREATE_OBS_HIKE_TIME_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_obs_hike_time ON " + OBS_TABLE +
+                    "(" + COL_HIKE_REF + ", " + COL_OBS_TIMESTAMP + ")";
+
+    private static final String CREATE_HIKES_DATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_hikes_date ON " + HIKES_TABLE + "(" + COL_HIKE_DATE + ")";
+
+    // v8 replacements: the text columns above do not sort chronologically
+    private static final String CREATE_OBS_HIKE_TIME_EPOCH_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_obs_hike_time_epoch ON " + OBS_TABLE +
+                    "(" + COL_HIKE_REF + ", " + COL_OBS_TIME_EPOCH + ")";
+
+    private static final String CREATE_HIKES_DATE_EPOCH_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_hikes_date_epoch ON " + HIKES_TABLE + "(" + COL_HIKE_DATE_EPOCH + ")";
+
+    // v12: partial indexes, so live-hike reads skip tombstones and the purge finds only them
+    // index-served conditions of the hike list and date range; QueryPlanTest checks their plans
+    // first page and getAllHikes: an ordered walk of idx_hikes_live_date, no sort
+    static final String LIVE_HIKES_WHERE = LIVE;
+    static final String PAGE_AFTER_KEY_WHERE =
+            LIVE + " AND (" + COL_HIKE_DATE_EPOCH + ", " + COL_ID + ") < (?, ?)";
+    static final String PAGE_NULL_DATES_WHERE = LIVE + " AND " + COL_HIKE_DATE_EPOCH + " IS NULL";
+    static final String PAGE_NULL_DATES_AFTER_ID_WHERE = PAGE_NULL_DATES_WHERE + " AND " + COL_ID + " < ?";
+    static final String HIKES_BETWEEN_WHERE = LIVE + " AND " + COL_HIKE_DATE_EPOCH + " BETWEEN ? AND ?";
+
+    private static final String CREATE_HIKES_LIVE_DATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_hikes_live_date ON " + HIKES_TABLE +
+                    "(" + COL_HIKE_DATE_EPOCH + ", " + COL_ID + ") WHERE " + LIVE;
+
+    private static final String CREATE_HIKES_DELETED_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_hikes_deleted ON " + HIKES_TABLE +
+                    "(" + COL_HIKE_DELETED_AT + ") WHERE " + COL_HIKE_DELETED_AT + " IS NOT NULL";
+
+    // Single process-wide helper: SQLiteOpenHelper caches the opened connection,
+    // so callers must never close it after a query.
+    private static volatile DatabaseHelper instance;
+
+    public static DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseHelper.class) {
+                if (instance == null) {
+                    instance = new DatabaseHelper(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    // resolved on open, cleared whenever the schema changes
+    private volatile ResolvedSchema schema;
+
+    public interface ChangeListener {
+        // called on the thread that made the write, after it committed
+        void onChange(DbChange change);
+    }
+
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    // hikes by id and observation lists by hike; kept current by every write below
+    private final HikeCache cache = new HikeCache();
+
+    // optional in-memory index for name/location substring lookups; null when off
+    private volatile HikeTrigramIndex trigramIndex;
+
+    private DatabaseHelper(Context context) {
+        this(context, DB_NAME);
+    }
+
+    // tests open their own file so they never touch the user's hikes
+    @VisibleForTesting
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DB_VERSION);
+        // readers get their own pooled connections and no longer wait for a writer
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(CREATE_HIKES_SQL);
         database.execSQL(CREATE_OBS_SQL);
+        database.execSQL(CREATE_OBS_HIKE_TIME_EPOCH_INDEX_SQL);
+        database.execSQL(CREATE_HIKES_LIVE_DATE_INDEX_SQL);
+        database.execSQL(CREATE_HIKES_DELETED_INDEX_SQL);
+        HikeFullText.create(database, HIKES_TABLE);
+        HikeStatsTable.create(database, HIKES_TABLE, OBS_TABLE);
+        ChangeLogTable.create(database, HIKES_TABLE, OBS_TABLE);
+        SyncTables.create(database);
+        schema = null;
     }
 
     @Override
     public void onConfigure(SQLiteDatabase database) {
         super.onConfigure(database);
         database.setForeignKeyConstraintsEnabled(true);
+        database.execSQL("PRAGMA synchronous = " + WAL_SYNCHRONOUS);
+        runPragma(database, "PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+    }
+
+    // PRAGMAs that report a value must go through rawQuery, execSQL rejects them
+    private void runPragma(SQLiteDatabase db, String pragma) {
+        Cursor c = null;
+        try {
+            c = db.rawQuery(pragma, null);
+            c.moveToFirst();
+        } catch (Exception e) {
+            Log.e(TAG, "runPragma error: " + pragma, e);
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+
+    /**
+     * Folds the WAL back into mhike.db. Called after large writes so the -wal file
+     * does not keep growing while readers hold it open; truncate also shrinks it to 0.
+     */
+    public void checkpoint(boolean truncate) {
+        runPragma(getWritableDatabase(), "PRAGMA wal_checkpoint(" + (truncate ? "TRUNCATE" : "PASSIVE") + ")");
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase database) {
+        super.onOpen(database);
+        schema(database);
     }
 
     /**
@@ -97,6 +254,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVer, int newVer) {
         Log.i(TAG, "onUpgrade from " + oldVer + " to " + newVer);
+        schema = null;
 
         // ensure hikes columns
         safeAddColumn(database, HIKES_TABLE, COL_HIKE_PARKING, "INTEGER", "0");
@@ -105,6 +263,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         safeAddColumn(database, HIKES_TABLE, COL_HIKE_TEAM, "INTEGER", "0");
         safeAddColumn(database, HIKES_TABLE, COL_HIKE_INFO, "TEXT", "NULL");
         safeAddColumn(database, HIKES_TABLE, COL_HIKE_DISTANCE, "REAL", "0");
+        // v12 tombstones; added up front because the hike_stats triggers read it
+        safeAddColumn(database, HIKES_TABLE, COL_HIKE_DELETED_AT, "INTEGER", null);
 
         // ensure observations columns (adds both `time` and `timestamp` if missing)
         safeAddColumn(database, OBS_TABLE, COL_HIKE_REF, "INTEGER", "0");
@@ -121,6 +281,119 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         } catch (Exception e) {
             Log.e(TAG, "Migration copy timestamp<->time failed: " + e.getMessage(), e);
         }
+
+        // v6: secondary indexes (columns above are guaranteed to exist by now)
+        if (oldVer < 6) {
+            try {
+                database.execSQL(CREATE_OBS_HIKE_TIME_INDEX_SQL);
+                database.execSQL(CREATE_HIKES_DATE_INDEX_SQL);
+                Log.i(TAG, "Created v6 indexes");
+            } catch (Exception e) {
+                Log.e(TAG, "Creating v6 indexes failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v7: full-text index over name/location/description/weather
+        if (oldVer < 7) {
+            try {
+                HikeFullText.create(database, HIKES_TABLE);
+                Log.i(TAG, "Created " + HikeFullText.FTS_TABLE);
+            } catch (Exception e) {
+                Log.e(TAG, "Creating full-text index failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v8: numeric date columns, backfilled from the text ones
+        if (oldVer < 8) {
+            safeAddColumn(database, HIKES_TABLE, COL_HIKE_DATE_EPOCH, "INTEGER", null);
+            safeAddColumn(database, OBS_TABLE, COL_OBS_TIME_EPOCH, "INTEGER", null);
+            try {
+                backfillEpochColumns(database);
+                database.execSQL("DROP INDEX IF EXISTS idx_hikes_date");
+                database.execSQL("DROP INDEX IF EXISTS idx_obs_hike_time");
+                database.execSQL(CREATE_HIKES_DATE_EPOCH_INDEX_SQL);
+                database.execSQL(CREATE_OBS_HIKE_TIME_EPOCH_INDEX_SQL);
+                Log.i(TAG, "Backfilled epoch date columns");
+            } catch (Exception e) {
+                Log.e(TAG, "Epoch date migration failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v9: summary table for the stats screen (needs the v8 date_epoch_day column)
+        if (oldVer < 9) {
+            try {
+                HikeStatsTable.create(database, HIKES_TABLE, OBS_TABLE);
+                Log.i(TAG, "Created " + HikeStatsTable.TABLE);
+            } catch (Exception e) {
+                Log.e(TAG, "Creating hike stats table failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v10: change log; rows stored so far count as changed by the first backup
+        if (oldVer < 10) {
+            try {
+                ChangeLogTable.create(database, HIKES_TABLE, OBS_TABLE);
+                Log.i(TAG, "Created " + ChangeLogTable.TABLE);
+            } catch (Exception e) {
+                Log.e(TAG, "Creating change log failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v11: sync bookkeeping (empty until the first sync)
+        if (oldVer < 11) {
+            try {
+                SyncTables.create(database);
+                Log.i(TAG, "Created " + SyncTables.ROWS + " and " + SyncTables.STATE);
+            } catch (Exception e) {
+                Log.e(TAG, "Creating sync tables failed: " + e.getMessage(), e);
+            }
+        }
+
+        // v12: tombstone-aware stats triggers, text-only FTS update triggers, partial indexes
+        if (oldVer < 12) {
+            try {
+                HikeStatsTable.dropTriggers(database);
+                HikeStatsTable.create(database, HIKES_TABLE, OBS_TABLE);
+                HikeFullText.recreateUpdateTriggers(database, HIKES_TABLE);
+                database.execSQL("DROP INDEX IF EXISTS idx_hikes_date_epoch");
+                database.execSQL(CREATE_HIKES_LIVE_DATE_INDEX_SQL);
+                database.execSQL(CREATE_HIKES_DELETED_INDEX_SQL);
+                Log.i(TAG, "Migrated to soft delete");
+            } catch (Exception e) {
+                Log.e(TAG, "Soft delete migration failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void backfillEpochColumns(SQLiteDatabase db) {
+        Cursor c = null;
+        SQLiteStatement update = null;
+        try {
+            update = db.compileStatement("UPDATE " + HIKES_TABLE + " SET " + COL_HIKE_DATE_EPOCH + "=? WHERE " + COL_ID + "=?");
+            c = db.rawQuery("SELECT " + COL_ID + ", " + COL_HIKE_DATE + " FROM " + HIKES_TABLE, null);
+            while (c.moveToNext()) {
+                bindEpoch(update, EpochDates.toEpochDay(c.getString(1)), c.getLong(0));
+            }
+            c.close();
+            update.close();
+
+            update = db.compileStatement("UPDATE " + OBS_TABLE + " SET " + COL_OBS_TIME_EPOCH + "=? WHERE " + COL_OBS_ID + "=?");
+            c = db.rawQuery("SELECT " + COL_OBS_ID + ", " + COL_OBS_TIMESTAMP + " FROM " + OBS_TABLE, null);
+            while (c.moveToNext()) {
+                bindEpoch(update, EpochDates.toEpochMillis(c.getString(1)), c.getLong(0));
+            }
+        } finally {
+            if (c != null) c.close();
+            if (update != null) update.close();
+        }
+    }
+
+    private void bindEpoch(SQLiteStatement update, Long epoch, long rowId) {
+        update.clearBindings();
+        if (epoch == null) update.bindNull(1);
+        else update.bindLong(1, epoch);
+        update.bindLong(2, rowId);
+        update.executeUpdateDelete();
     }
 
     private void safeAddColumn(SQLiteDatabase db, String tableName, String columnName, String columnType, String defaultValueExpr) {
@@ -160,45 +433,61 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return false;
     }
 
-    private void logTableInfo(SQLiteDatabase db, String tableName) {
-        Cursor c = null;
-        try {
-            c = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
-            StringBuilder sb = new StringBuilder("PRAGMA table_info(" + tableName + "): ");
-            if (c != null && c.moveToFirst()) {
-                do {
-                    sb.append("[")
-                            .append(c.getString(c.getColumnIndexOrThrow("name")))
-                            .append(":")
-                            .append(c.getString(c.getColumnIndexOrThrow("type")))
-                            .append("] ");
-                } while (c.moveToNext());
+    /**
+     * Column mapping for the current schema. Resolved once per open and dropped
+     * whenever onCreate/onUpgrade changes the tables, so the CRUD paths below
+     * never run PRAGMA table_info themselves.
+     */
+    ResolvedSchema schema(SQLiteDatabase db) {
+        ResolvedSchema s = schema;
+        if (s == null) {
+            synchronized (this) {
+                s = schema;
+                if (s == null) {
+                    s = ResolvedSchema.resolve(db, HIKES_TABLE, OBS_TABLE);
+                    schema = s;
+                }
             }
-            Log.d(TAG, sb.toString());
-        } catch (Exception e) {
-            Log.e(TAG, "logTableInfo error", e);
-        } finally {
-            if (c != null) c.close();
         }
+        return s;
     }
 
-    private Set<String> getExistingColumns(SQLiteDatabase db, String tableName) {
-        Set<String> cols = new HashSet<>();
-        Cursor c = null;
-        try {
-            c = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
-            if (c != null && c.moveToFirst()) {
-                do {
-                    String name = c.getString(c.getColumnIndexOrThrow("name"));
-                    cols.add(name);
-                } while (c.moveToNext());
+    public HikeCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Serves searchHikesByText, similarHikes and fuzzySearchHikes from an in-memory
+     * trigram index instead of scanning the table. The index is built on its first
+     * query and then kept in step with the change events.
+     */
+    public synchronized void setTrigramIndexEnabled(boolean enabled) {
+        if (enabled && trigramIndex == null) {
+            trigramIndex = new HikeTrigramIndex(this);
+            addChangeListener(trigramIndex);
+        } else if (!enabled && trigramIndex != null) {
+            removeChangeListener(trigramIndex);
+            trigramIndex = null;
+        }
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void publish(DbChange change) {
+        Log.d(TAG, "publish " + change);
+        for (ChangeListener listener : changeListeners) {
+            try {
+                listener.onChange(change);
+            } catch (Exception e) {
+                Log.e(TAG, "change listener error", e);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "getExistingColumns error", e);
-        } finally {
-            if (c != null) c.close();
         }
-        return cols;
     }
 
     private String safeString(String s) {
@@ -207,200 +496,329 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     // ------------------ CRUD for Hike ------------------
 
+    private ContentValues buildHikeValues(ResolvedSchema s, Hike hike) {
+        ContentValues vals = new ContentValues();
+        if (s.hikeName != null) vals.put(s.hikeName, safeString(hike.getName()));
+        if (s.hikeLocation != null) vals.put(s.hikeLocation, safeString(hike.getLocation()));
+        if (s.hikeDate != null) vals.put(s.hikeDate, safeString(hike.getDate()));
+        if (s.hikeDateEpoch != null) vals.put(s.hikeDateEpoch, EpochDates.toEpochDay(hike.getDate()));
+
+        int parkingVal = hike.isParking() ? 1 : 0;
+        for (String col : s.hikeParking) vals.put(col, parkingVal);
+
+        if (s.hikeDistance != null) vals.put(s.hikeDistance, hike.getLength());
+        if (s.hikeLevel != null) vals.put(s.hikeLevel, hike.getDifficulty() != null ? hike.getDifficulty() : "Easy");
+        if (s.hikeInfo != null) vals.put(s.hikeInfo, safeString(hike.getDescription()));
+        if (s.hikeWeather != null) vals.put(s.hikeWeather, safeString(hike.getWeather()));
+        if (s.hikeTeam != null) vals.put(s.hikeTeam, hike.getGroupSize());
+        return vals;
+    }
+
     public long addHike(Hike hike) {
         SQLiteDatabase database = this.getWritableDatabase();
-
-        // debug schema
-        logTableInfo(database, HIKES_TABLE);
-
         long insertId = -1;
         try {
-            Set<String> existingCols = getExistingColumns(database, HIKES_TABLE);
-
-            ContentValues vals = new ContentValues();
-
-            if (existingCols.contains(COL_HIKE_NAME)) {
-                vals.put(COL_HIKE_NAME, safeString(hike.getName()));
-            }
-            if (existingCols.contains(COL_HIKE_LOCATION)) {
-                vals.put(COL_HIKE_LOCATION, safeString(hike.getLocation()));
-            }
-            if (existingCols.contains(COL_HIKE_DATE)) {
-                vals.put(COL_HIKE_DATE, safeString(hike.getDate()));
-            }
-
-            int parkingVal = hike.isParking() ? 1 : 0;
-            if (existingCols.contains(COL_HIKE_PARKING)) {
-                vals.put(COL_HIKE_PARKING, parkingVal);
-            }
-            if (existingCols.contains("parking_available")) {
-                vals.put("parking_available", parkingVal);
-            }
-            if (existingCols.contains("has_parking")) {
-                vals.put("has_parking", parkingVal);
-            }
-
-            if (existingCols.contains(COL_HIKE_DISTANCE)) {
-                vals.put(COL_HIKE_DISTANCE, hike.getLength());
-            } else if (existingCols.contains("distance")) {
-                vals.put("distance", hike.getLength());
-            }
-
-            if (existingCols.contains(COL_HIKE_LEVEL)) {
-                vals.put(COL_HIKE_LEVEL, hike.getDifficulty() != null ? hike.getDifficulty() : "Easy");
-            } else if (existingCols.contains("level")) {
-                vals.put("level", hike.getDifficulty() != null ? hike.getDifficulty() : "Easy");
-            }
-
-            if (existingCols.contains(COL_HIKE_INFO)) {
-                vals.put(COL_HIKE_INFO, safeString(hike.getDescription()));
-            } else if (existingCols.contains("info")) {
-                vals.put("info", safeString(hike.getDescription()));
-            }
-
-            if (existingCols.contains(COL_HIKE_WEATHER)) {
-                vals.put(COL_HIKE_WEATHER, safeString(hike.getWeather()));
-            } else if (existingCols.contains("weather_info")) {
-                vals.put("weather_info", safeString(hike.getWeather()));
-            }
-
-            if (existingCols.contains(COL_HIKE_TEAM)) {
-                vals.put(COL_HIKE_TEAM, hike.getGroupSize());
-            } else if (existingCols.contains("group")) {
-                vals.put("group", hike.getGroupSize());
-            }
-
-            // Defensive defaults for NOT NULL columns
-            if (existingCols.contains(COL_HIKE_PARKING) && !vals.containsKey(COL_HIKE_PARKING)) {
-                vals.put(COL_HIKE_PARKING, 0);
-            }
-            if (existingCols.contains("parking_available") && !vals.containsKey("parking_available")) {
-                vals.put("parking_available", 0);
-            }
-            if (existingCols.contains(COL_HIKE_DISTANCE) && !vals.containsKey(COL_HIKE_DISTANCE)) {
-                vals.put(COL_HIKE_DISTANCE, 0);
-            }
-            if (existingCols.contains(COL_HIKE_LEVEL) && !vals.containsKey(COL_HIKE_LEVEL)) {
-                vals.put(COL_HIKE_LEVEL, "Easy");
-            }
-            if (existingCols.contains(COL_HIKE_NAME) && !vals.containsKey(COL_HIKE_NAME)) {
-                vals.put(COL_HIKE_NAME, "");
-            }
-            if (existingCols.contains(COL_HIKE_LOCATION) && !vals.containsKey(COL_HIKE_LOCATION)) {
-                vals.put(COL_HIKE_LOCATION, "");
-            }
-            if (existingCols.contains(COL_HIKE_DATE) && !vals.containsKey(COL_HIKE_DATE)) {
-                vals.put(COL_HIKE_DATE, "");
-            }
-
+            ContentValues vals = buildHikeValues(schema(database), hike);
             insertId = database.insert(HIKES_TABLE, null, vals);
             Log.d(TAG, "addHike result id=" + insertId);
             if (insertId > 0) {
                 try { hike.setId((int) insertId); } catch (Exception ignored) {}
+                cache.storeHike(hike);
+                publish(DbChange.hikes(DbChange.Op.INSERT, (int) insertId));
             }
         } catch (SQLiteException sqle) {
             Log.e(TAG, "addHike SQLiteException", sqle);
         } catch (Exception e) {
             Log.e(TAG, "addHike error", e);
-        } finally {
-            database.close();
         }
         return insertId;
     }
 
     public Hike getHike(int hikeId) {
+        Hike hikeData = cache.getHike(hikeId);
+        if (hikeData != null) return hikeData;
+
+        long readGeneration = cache.generation();
         SQLiteDatabase database = this.getReadableDatabase();
         Cursor dataCursor = null;
-        Hike hikeData = null;
         try {
-            dataCursor = database.query(HIKES_TABLE, null, COL_ID + "=?",
+            dataCursor = database.query(HIKES_TABLE, null, COL_ID + "=? AND " + LIVE,
                     new String[]{String.valueOf(hikeId)}, null, null, null);
 
             if (dataCursor != null && dataCursor.moveToFirst()) {
-                hikeData = buildHikeFromCursor(dataCursor);
+                hikeData = new HikeCursorMapper(dataCursor).map(dataCursor);
+                cache.putHike(hikeData, readGeneration);
             }
         } catch (Exception e) {
             Log.e(TAG, "getHike error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
         return hikeData;
     }
 
+    // ids per IN list, well below SQLite's statement length limit
+    private static final int IDS_PER_QUERY = 500;
+
+    /**
+     * Live hikes with the given ids, in the order given; ids without a live hike are
+     * skipped. Cached hikes are served from the cache, the rest in a few IN queries.
+     */
+    List<Hike> getHikesByIds(int[] ids) {
+        Map<Integer, Hike> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int id : ids) {
+            Hike cached = cache.getHike(id);
+            if (cached != null) found.put(id, cached);
+            else missing.add(id);
+        }
+
+        long readGeneration = cache.generation();
+        SQLiteDatabase database = this.getReadableDatabase();
+        for (int from = 0; from < missing.size(); from += IDS_PER_QUERY) {
+            StringBuilder in = new StringBuilder();
+            for (int i = from; i < Math.min(from + IDS_PER_QUERY, missing.size()); i++) {
+                if (in.length() > 0) in.append(',');
+                in.append(missing.get(i));
+            }
+            Cursor dataCursor = null;
+            try {
+                dataCursor = database.query(HIKES_TABLE, null, COL_ID + " IN (" + in + ") AND " + LIVE,
+                        null, null, null, null);
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
+                while (dataCursor.moveToNext()) {
+                    Hike hike = mapper.map(dataCursor);
+                    found.put(hike.getId(), hike);
+                    cache.putHike(hike, readGeneration);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "getHikesByIds error", e);
+            } finally {
+                if (dataCursor != null) dataCursor.close();
+            }
+        }
+
+        List<Hike> hikes = new ArrayList<>(found.size());
+        for (int id : ids) {
+            Hike hike = found.get(id);
+            if (hike != null) hikes.add(hike);
+        }
+        return hikes;
+    }
+
     public List<Hike> getAllHikes() {
         List<Hike> allHikes = new ArrayList<>();
-        String querySQL = "SELECT * FROM " + HIKES_TABLE + " ORDER BY " + COL_HIKE_DATE + " DESC";
+        String querySQL = "SELECT * FROM " + HIKES_TABLE + " WHERE " + LIVE_HIKES_WHERE + " ORDER BY " + HIKE_ORDER_BY;
         SQLiteDatabase database = this.getReadableDatabase();
         Cursor dataCursor = null;
         try {
             dataCursor = database.rawQuery(querySQL, null);
             if (dataCursor != null && dataCursor.moveToFirst()) {
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
                 do {
-                    allHikes.add(buildHikeFromCursor(dataCursor));
+                    allHikes.add(mapper.map(dataCursor));
                 } while (dataCursor.moveToNext());
             }
         } catch (Exception e) {
             Log.e(TAG, "getAllHikes error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
         return allHikes;
     }
 
-    public int updateHike(Hike hike) {
-        SQLiteDatabase database = this.getWritableDatabase();
-        int affectedRows = 0;
+    /**
+     * Keyset page of the hike list in HIKE_ORDER_BY order. Pass afterId 0 for the first
+     * page, then the previous page's getLastDate()/getLastId(). Each page is an index
+     * seek, so its cost does not grow with how far the user has scrolled.
+     */
+    public HikePage loadHikesPage(Long afterDate, int afterId, int pageSize) {
+        PageBuilder page = new PageBuilder(pageSize, afterDate, afterId);
+        long readGeneration = cache.generation();
+        SQLiteDatabase database = this.getReadableDatabase();
         try {
-            Set<String> existingCols = getExistingColumns(database, HIKES_TABLE);
-            ContentValues vals = new ContentValues();
-
-            if (existingCols.contains(COL_HIKE_NAME)) vals.put(COL_HIKE_NAME, safeString(hike.getName()));
-            if (existingCols.contains(COL_HIKE_LOCATION)) vals.put(COL_HIKE_LOCATION, safeString(hike.getLocation()));
-            if (existingCols.contains(COL_HIKE_DATE)) vals.put(COL_HIKE_DATE, safeString(hike.getDate()));
+            if (afterId > 0 && afterDate != null) {
+                // row-value comparison seeks idx_hikes_live_date; OR-ing in the NULL dates
+                // would turn it into a scan, so those are paged by their own query below
+                page.collect(database, PAGE_AFTER_KEY_WHERE,
+                        new String[]{String.valueOf(afterDate), String.valueOf(afterId)}, cache, readGeneration);
+                // NULL dates sort after every real date in DESC order
+                if (!page.hasMore) {
+                    page.collect(database, PAGE_NULL_DATES_WHERE, null, cache, readGeneration);
+                }
+            } else if (afterId > 0) {
+                page.collect(database, PAGE_NULL_DATES_AFTER_ID_WHERE, new String[]{String.valueOf(afterId)},
+                        cache, readGeneration);
+            } else {
+                page.collect(database, LIVE_HIKES_WHERE, null, cache, readGeneration);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "loadHikesPage error", e);
+        }
+        return new HikePage(page.hikes, page.lastDate, page.lastId, page.hasMore);
+    }
 
-            int parkingVal = hike.isParking() ? 1 : 0;
-            if (existingCols.contains(COL_HIKE_PARKING)) vals.put(COL_HIKE_PARKING, parkingVal);
-            if (existingCols.contains("parking_available")) vals.put("parking_available", parkingVal);
-            if (existingCols.contains("has_parking")) vals.put("has_parking", parkingVal);
+    // accumulates one page across the dated and the NULL-date queries
+    private static final class PageBuilder {
+        final int pageSize;
+        final List<Hike> hikes = new ArrayList<>();
+        Long lastDate;
+        int lastId;
+        boolean hasMore;
+
+        PageBuilder(int pageSize, Long afterDate, int afterId) {
+            this.pageSize = pageSize;
+            this.lastDate = afterDate;
+            this.lastId = afterId;
+        }
 
-            if (existingCols.contains(COL_HIKE_DISTANCE)) vals.put(COL_HIKE_DISTANCE, hike.getLength());
-            if (existingCols.contains(COL_HIKE_LEVEL)) vals.put(COL_HIKE_LEVEL, hike.getDifficulty() != null ? hike.getDifficulty() : "Easy");
-            if (existingCols.contains(COL_HIKE_INFO)) vals.put(COL_HIKE_INFO, safeString(hike.getDescription()));
-            if (existingCols.contains(COL_HIKE_WEATHER)) vals.put(COL_HIKE_WEATHER, safeString(hike.getWeather()));
-            if (existingCols.contains(COL_HIKE_TEAM)) vals.put(COL_HIKE_TEAM, hike.getGroupSize());
+        void collect(SQLiteDatabase database, String where, String[] whereArgs, HikeCache cache, long readGeneration) {
+            // one extra row tells whether another page exists
+            int limit = pageSize - hikes.size() + 1;
+            Cursor dataCursor = database.query(HIKES_TABLE, null, where, whereArgs, null, null,
+                    HIKE_ORDER_BY, String.valueOf(limit));
+            try {
+                if (dataCursor == null || !dataCursor.moveToFirst()) return;
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
+                int epochIdx = dataCursor.getColumnIndex(COL_HIKE_DATE_EPOCH);
+                do {
+                    if (hikes.size() == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    Hike hike = mapper.map(dataCursor);
+                    hikes.add(hike);
+                    cache.putHike(hike, readGeneration);
+                    lastId = hike.getId();
+                    lastDate = epochIdx < 0 || dataCursor.isNull(epochIdx) ? null : dataCursor.getLong(epochIdx);
+                } while (dataCursor.moveToNext());
+            } finally {
+                if (dataCursor != null) dataCursor.close();
+            }
+        }
+    }
 
-            affectedRows = database.update(HIKES_TABLE, vals, COL_ID + "=?",
+    public int updateHike(Hike hike) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        int affectedRows = 0;
+        try {
+            ContentValues vals = buildHikeValues(schema(database), hike);
+            // a hike deleted meanwhile (e.g. from a stale detail screen) stays deleted
+            affectedRows = database.update(HIKES_TABLE, vals, COL_ID + "=? AND " + LIVE,
                     new String[]{String.valueOf(hike.getId())});
+            if (affectedRows > 0) {
+                cache.storeHike(hike);
+                publish(DbChange.hikes(DbChange.Op.UPDATE, hike.getId()));
+            }
         } catch (Exception e) {
             Log.e(TAG, "updateHike error", e);
-        } finally {
-            database.close();
         }
         return affectedRows;
     }
 
-    public void deleteHike(int hikeId) {
+    // last tombstone stamp handed out; stamps are unique so undo restores one delete only
+    private long lastDeleteStamp;
+
+    private synchronized long nextDeleteStamp() {
+        lastDeleteStamp = Math.max(System.currentTimeMillis(), lastDeleteStamp + 1);
+        return lastDeleteStamp;
+    }
+
+    /**
+     * Tombstones the hike: it disappears from every read at once and its observations
+     * stay until purgeDeletedHikes removes both. Returns the stamp to pass to
+     * undoDelete, or 0 if there was no such live hike.
+     */
+    public long deleteHike(int hikeId) {
         SQLiteDatabase database = this.getWritableDatabase();
+        long stamp = nextDeleteStamp();
         try {
-            database.delete(HIKES_TABLE, COL_ID + "=?", new String[]{String.valueOf(hikeId)});
+            ContentValues vals = new ContentValues();
+            vals.put(COL_HIKE_DELETED_AT, stamp);
+            int deleted = database.update(HIKES_TABLE, vals, COL_ID + "=? AND " + LIVE,
+                    new String[]{String.valueOf(hikeId)});
+            // drops the observation list too
+            cache.removeHike(hikeId);
+            if (deleted > 0) {
+                publish(DbChange.hikes(DbChange.Op.DELETE, hikeId));
+                return stamp;
+            }
         } catch (Exception e) {
             Log.e(TAG, "deleteHike error", e);
-        } finally {
-            database.close();
         }
+        return 0;
     }
 
-    public void deleteAllHikes() {
+    /**
+     * Tombstones every live hike with one UPDATE; no observation is touched until the
+     * purge. Returns the stamp to pass to undoDelete, or 0 if nothing was deleted.
+     */
+    public long deleteAllHikes() {
         SQLiteDatabase database = this.getWritableDatabase();
+        long stamp = nextDeleteStamp();
+        int deleted = 0;
         try {
-            database.delete(OBS_TABLE, null, null);
-            database.delete(HIKES_TABLE, null, null);
+            ContentValues vals = new ContentValues();
+            vals.put(COL_HIKE_DELETED_AT, stamp);
+            deleted = database.update(HIKES_TABLE, vals, LIVE, null);
         } catch (Exception e) {
             Log.e(TAG, "deleteAllHikes error", e);
+        }
+        cache.clear();
+        publish(DbChange.hikes(DbChange.Op.CLEAR));
+        return deleted > 0 ? stamp : 0;
+    }
+
+    /** Brings back the hikes tombstoned with stamp, if they have not been purged yet. Returns how many. */
+    public int undoDelete(long stamp) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        String[] args = {String.valueOf(stamp)};
+        Cursor c = null;
+        try {
+            c = database.rawQuery("SELECT " + COL_ID + " FROM " + HIKES_TABLE + " WHERE " +
+                    COL_HIKE_DELETED_AT + " = ?", args);
+            int[] ids = new int[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) ids[i] = c.getInt(0);
+            if (ids.length == 0) return 0;
+
+            ContentValues vals = new ContentValues();
+            vals.putNull(COL_HIKE_DELETED_AT);
+            int restored = database.update(HIKES_TABLE, vals, COL_HIKE_DELETED_AT + " = ?", args);
+            publish(DbChange.hikes(DbChange.Op.INSERT, ids));
+            return restored;
+        } catch (Exception e) {
+            Log.e(TAG, "undoDelete error", e);
+            return 0;
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+
+    /**
+     * Physically deletes up to maxHikes hikes tombstoned at or before deletedBefore,
+     * with their observations, in one short transaction. Returns the number removed
+     * (fewer than maxHikes means none are left), or -1 on error.
+     * HikeRepository.purgeDeleted calls this chunk by chunk.
+     */
+    public int purgeDeletedHikes(long deletedBefore, int maxHikes) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        database.beginTransactionNonExclusive();
+        try {
+            // the hike_stats delete trigger removes each hike's observations first
+            SQLiteStatement purge = database.compileStatement("DELETE FROM " + HIKES_TABLE + " WHERE " + COL_ID +
+                    " IN (SELECT " + COL_ID + " FROM " + HIKES_TABLE + " WHERE " + COL_HIKE_DELETED_AT +
+                    " IS NOT NULL AND " + COL_HIKE_DELETED_AT + " <= ? LIMIT ?)");
+            purge.bindLong(1, deletedBefore);
+            purge.bindLong(2, maxHikes);
+            int purged = purge.executeUpdateDelete();
+            purge.close();
+            database.setTransactionSuccessful();
+            return purged;
+        } catch (Exception e) {
+            Log.e(TAG, "purgeDeletedHikes error", e);
+            return -1;
         } finally {
-            database.close();
+            database.endTransaction();
         }
     }
 
@@ -410,173 +828,367 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor dataCursor = null;
         try {
             dataCursor = database.query(HIKES_TABLE, null,
-                    COL_HIKE_NAME + " LIKE ?",
+                    LIVE + " AND " + COL_HIKE_NAME + " LIKE ?",
                     new String[]{searchName + "%"}, null, null,
-                    COL_HIKE_DATE + " DESC");
+                    HIKE_ORDER_BY);
 
             if (dataCursor != null && dataCursor.moveToFirst()) {
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
                 do {
-                    foundHikes.add(buildHikeFromCursor(dataCursor));
+                    foundHikes.add(mapper.map(dataCursor));
                 } while (dataCursor.moveToNext());
             }
         } catch (Exception e) {
             Log.e(TAG, "searchHikesByName error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
         return foundHikes;
     }
 
-    public List<Hike> advancedSearch(String name, String location, String distance, String date) {
+    /** Hikes whose name or location contains the text anywhere, newest first. */
+    public List<Hike> searchHikesByText(String text) {
+        HikeTrigramIndex index = trigramIndex;
+        if (index != null) return index.search(text);
+
         List<Hike> foundHikes = new ArrayList<>();
         SQLiteDatabase database = this.getReadableDatabase();
         Cursor dataCursor = null;
         try {
-            StringBuilder whereClause = new StringBuilder("1=1");
-            List<String> whereArgs = new ArrayList<>();
-
-            if (name != null && !name.isEmpty()) {
-                whereClause.append(" AND ").append(COL_HIKE_NAME).append(" LIKE ?");
-                whereArgs.add("%" + name + "%");
-            }
-
-            if (location != null && !location.isEmpty()) {
-                whereClause.append(" AND ").append(COL_HIKE_LOCATION).append(" LIKE ?");
-                whereArgs.add("%" + location + "%");
-            }
-
-            if (distance != null && !distance.isEmpty()) {
-                try {
-                    double distVal = Double.parseDouble(distance);
-                    whereClause.append(" AND ").append(COL_HIKE_DISTANCE).append(" = ?");
-                    whereArgs.add(String.valueOf(distVal));
-                } catch (NumberFormatException e) {
-                    // ignore
-                }
-            }
-
-            if (date != null && !date.isEmpty()) {
-                whereClause.append(" AND ").append(COL_HIKE_DATE).append(" LIKE ?");
-                whereArgs.add("%" + date + "%");
-            }
-
-            dataCursor = database.query(HIKES_TABLE, null, whereClause.toString(),
-                    whereArgs.toArray(new String[0]), null, null, COL_HIKE_DATE + " DESC");
+            String pattern = "%" + (text == null ? "" : text.trim()) + "%";
+            dataCursor = database.query(HIKES_TABLE, null,
+                    LIVE + " AND (" + COL_HIKE_NAME + " LIKE ? OR " + COL_HIKE_LOCATION + " LIKE ?)",
+                    new String[]{pattern, pattern}, null, null,
+                    HIKE_ORDER_BY);
 
             if (dataCursor != null && dataCursor.moveToFirst()) {
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
                 do {
-                    foundHikes.add(buildHikeFromCursor(dataCursor));
+                    foundHikes.add(mapper.map(dataCursor));
                 } while (dataCursor.moveToNext());
             }
         } catch (Exception e) {
-            Log.e(TAG, "advancedSearch error", e);
+            Log.e(TAG, "searchHikesByText error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
         return foundHikes;
     }
 
-    // ------------------ Observations CRUD (defensive) ------------------
-
-    public long addObservation(Observation obs) {
-        SQLiteDatabase database = this.getWritableDatabase();
-        long insertId = -1;
-        try {
-            // debug schema
-            logTableInfo(database, OBS_TABLE);
-
-            Set<String> existingCols = getExistingColumns(database, OBS_TABLE);
-            ContentValues vals = new ContentValues();
-
-            // put only if column exists (support legacy/variant names)
-            if (existingCols.contains(COL_HIKE_REF)) vals.put(COL_HIKE_REF, obs.getHikeId());
-            else if (existingCols.contains("hike")) vals.put("hike", obs.getHikeId());
-
-            if (existingCols.contains(COL_OBS_CONTENT)) vals.put(COL_OBS_CONTENT, safeString(obs.getObservationText()));
-            else if (existingCols.contains("content")) vals.put("content", safeString(obs.getObservationText()));
-
-            // time/timestamp variants - set all available to avoid NOT NULL fails
-            if (existingCols.contains("time")) vals.put("time", safeString(obs.getTime()));
-            if (existingCols.contains("timestamp")) vals.put("timestamp", safeString(obs.getTime()));
-            if (existingCols.contains("obs_time")) vals.put("obs_time", safeString(obs.getTime()));
-            if (existingCols.contains(COL_OBS_TIMESTAMP)) vals.put(COL_OBS_TIMESTAMP, safeString(obs.getTime())); // redundant but safe
-
-            if (existingCols.contains(COL_OBS_NOTES)) vals.put(COL_OBS_NOTES, safeString(obs.getComments()));
-            else if (existingCols.contains("comments")) vals.put("comments", safeString(obs.getComments()));
-            else if (existingCols.contains("notes")) vals.put("notes", safeString(obs.getComments()));
-
-            // Defensive defaults for NOT NULL
-            if (existingCols.contains(COL_HIKE_REF) && !vals.containsKey(COL_HIKE_REF)) vals.put(COL_HIKE_REF, 0);
-            if (existingCols.contains("time") && !vals.containsKey("time")) vals.put("time", "");
-            if (existingCols.contains("timestamp") && !vals.containsKey("timestamp")) vals.put("timestamp", "");
-            if (existingCols.contains(COL_OBS_CONTENT) && !vals.containsKey(COL_OBS_CONTENT)) vals.put(COL_OBS_CONTENT, "");
+    /**
+     * Up to limit hikes whose name/location shares most trigrams with the text, best
+     * first; the score is the trigram overlap (0..1). Without the index this builds a
+     * throwaway one, which costs a full read of the table.
+     */
+    public List<HikeMatch> similarHikes(String text, int limit) {
+        HikeTrigramIndex index = trigramIndex;
+        if (index == null) index = new HikeTrigramIndex(this);
+        return index.similar(text, limit);
+    }
 
-            insertId = database.insert(OBS_TABLE, null, vals);
-            Log.d(TAG, "addObservation result id=" + insertId);
-            if (insertId > 0) obs.setId((int) insertId);
-        } catch (SQLiteException sqle) {
-            Log.e(TAG, "addObservation SQLiteException", sqle);
-        } catch (Exception e) {
-            Log.e(TAG, "addObservation error", e);
-        } finally {
-            database.close();
-        }
-        return insertId;
+    /**
+     * Typo-tolerant search: up to limit hikes whose name/location words are within a
+     * small edit distance of the query words, best first. Falls back to a throwaway
+     * index like similarHikes when the trigram index is off.
+     */
+    public List<HikeMatch> fuzzySearchHikes(String text, int limit) {
+        HikeTrigramIndex index = trigramIndex;
+        if (index == null) index = new HikeTrigramIndex(this);
+        return index.fuzzy(text, limit);
     }
 
-    public Observation getObservation(int obsId) {
+    /**
+     * Hikes dated within [from, to] (inclusive), newest first. Runs as a range scan on
+     * idx_hikes_live_date; hikes whose date text could not be parsed are not included.
+     */
+    public List<Hike> hikesBetween(LocalDate from, LocalDate to) {
+        List<Hike> foundHikes = new ArrayList<>();
         SQLiteDatabase database = this.getReadableDatabase();
         Cursor dataCursor = null;
-        Observation obsData = null;
         try {
-            dataCursor = database.query(OBS_TABLE, null, COL_OBS_ID + "=?",
-                    new String[]{String.valueOf(obsId)}, null, null, null);
+            dataCursor = database.query(HIKES_TABLE, null, HIKES_BETWEEN_WHERE,
+                    new String[]{String.valueOf(from.toEpochDay()), String.valueOf(to.toEpochDay())},
+                    null, null, HIKE_ORDER_BY);
 
             if (dataCursor != null && dataCursor.moveToFirst()) {
-                obsData = buildObsFromCursor(dataCursor);
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
+                do {
+                    foundHikes.add(mapper.map(dataCursor));
+                } while (dataCursor.moveToNext());
             }
         } catch (Exception e) {
-            Log.e(TAG, "getObservation error", e);
+            Log.e(TAG, "hikesBetween error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
-        return obsData;
+        return foundHikes;
     }
 
-    public List<Observation> getObservationsByHike(int hikeId) {
-        List<Observation> allObs = new ArrayList<>();
+    /**
+     * Prefix full-text search over name, location, description and weather, ranked by
+     * bm25 (name hits weigh most). Each match carries a snippet with the hit terms
+     * wrapped in <b></b>.
+     */
+    public List<HikeMatch> fullTextSearch(String query, int limit, int offset) {
+        List<HikeMatch> matches = new ArrayList<>();
+        String matchQuery = HikeFullText.toMatchQuery(query);
+        if (matchQuery == null || limit <= 0) return matches;
+
         SQLiteDatabase database = this.getReadableDatabase();
         Cursor dataCursor = null;
         try {
-            // choose a safe sort column: prefer time variants, fallback to id
-            Set<String> existingCols = getExistingColumns(database, OBS_TABLE);
-            String orderBy = COL_OBS_ID + " DESC";
-            if (existingCols.contains("time")) orderBy = "time DESC";
-            else if (existingCols.contains("timestamp")) orderBy = "timestamp DESC";
-            else if (existingCols.contains("obs_time")) orderBy = "obs_time DESC";
-
-            // build where clause
-            String where = COL_HIKE_REF + "=?";
-            if (!existingCols.contains(COL_HIKE_REF) && existingCols.contains("hike")) where = "hike=?";
+            // 1) score every match from its matchinfo only, no row data is read yet
+            List<HikeFullText.Scored> ranked = new ArrayList<>();
+            dataCursor = database.rawQuery("SELECT docid, matchinfo(" + HikeFullText.FTS_TABLE + ", '" +
+                            HikeFullText.MATCH_INFO_FORMAT + "') FROM " + HikeFullText.FTS_TABLE +
+                            " WHERE " + HikeFullText.FTS_TABLE + " MATCH ? AND docid NOT IN (" + tombstonedIds() + ")",
+                    new String[]{matchQuery});
+            while (dataCursor.moveToNext()) {
+                ranked.add(new HikeFullText.Scored(dataCursor.getInt(0), HikeFullText.bm25(dataCursor.getBlob(1))));
+            }
+            dataCursor.close();
+            dataCursor = null;
+
+            Collections.sort(ranked, (a, b) -> Double.compare(b.score, a.score));
+            if (offset >= ranked.size()) return matches;
+            List<HikeFullText.Scored> page = ranked.subList(Math.max(0, offset), Math.min(ranked.size(), offset + limit));
+
+            // 2) load rows and snippets for the requested page only
+            StringBuilder ids = new StringBuilder();
+            for (HikeFullText.Scored entry : page) {
+                if (ids.length() > 0) ids.append(',');
+                ids.append(entry.hikeId);
+            }
+            Map<Integer, Hike> hikesById = new HashMap<>();
+            Map<Integer, String> snippetsById = new HashMap<>();
+            dataCursor = database.rawQuery("SELECT h.*, " + HikeFullText.SNIPPET_SQL + " AS snip FROM " +
+                            HikeFullText.FTS_TABLE + " JOIN " + HIKES_TABLE + " h ON h." + COL_ID + " = " +
+                            HikeFullText.FTS_TABLE + ".docid WHERE " + HikeFullText.FTS_TABLE + " MATCH ? AND " +
+                            HikeFullText.FTS_TABLE + ".docid IN (" + ids + ")",
+                    new String[]{matchQuery});
+            if (dataCursor.moveToFirst()) {
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
+                int snipIdx = dataCursor.getColumnIndex("snip");
+                do {
+                    Hike hike = mapper.map(dataCursor);
+                    hikesById.put(hike.getId(), hike);
+                    snippetsById.put(hike.getId(), dataCursor.getString(snipIdx));
+                } while (dataCursor.moveToNext());
+            }
+
+            for (HikeFullText.Scored entry : page) {
+                Hike hike = hikesById.get(entry.hikeId);
+                if (hike != null) {
+                    matches.add(new HikeMatch(hike, snippetsById.get(entry.hikeId), entry.score));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "fullTextSearch error", e);
+        } finally {
+            if (dataCursor != null) dataCursor.close();
+        }
+        return matches;
+    }
+
+    // typed distance in the old search form matches hikes within this many km
+    private static final double DISTANCE_TOLERANCE_KM = 0.5;
+
+    /**
+     * Four-field form kept for SearchActivity; maps onto {@link HikeSearchCriteria}.
+     * A distance matches within DISTANCE_TOLERANCE_KM and a full dd/MM/yyyy date
+     * matches that day; a partial date falls back to text matching.
+     */
+    public List<Hike> advancedSearch(String name, String location, String distance, String date) {
+        HikeSearchCriteria criteria = new HikeSearchCriteria();
+        criteria.setName(name);
+        criteria.setLocation(location);
+
+        if (distance != null && !distance.isEmpty()) {
+            try {
+                double distVal = Double.parseDouble(distance);
+                criteria.setDistanceRange(distVal - DISTANCE_TOLERANCE_KM, distVal + DISTANCE_TOLERANCE_KM);
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+        }
+
+        if (date != null && !date.isEmpty()) {
+            Long epochDay = EpochDates.toEpochDay(date);
+            if (epochDay != null) {
+                LocalDate day = LocalDate.ofEpochDay(epochDay);
+                criteria.setDateRange(day, day);
+            } else {
+                criteria.setDateText(date);
+            }
+        }
+        return advancedSearch(criteria);
+    }
+
+    public List<Hike> advancedSearch(HikeSearchCriteria criteria) {
+        List<Hike> foundHikes = new ArrayList<>();
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        try {
+            StringBuilder whereClause = new StringBuilder(LIVE);
+            List<String> whereArgs = new ArrayList<>();
+            buildCriteriaWhere(schema(database), criteria, whereClause, whereArgs);
+
+            dataCursor = database.query(HIKES_TABLE, null, whereClause.toString(),
+                    whereArgs.toArray(new String[0]), null, null, HIKE_ORDER_BY);
+
+            if (dataCursor != null && dataCursor.moveToFirst()) {
+                HikeCursorMapper mapper = new HikeCursorMapper(dataCursor);
+                do {
+                    foundHikes.add(mapper.map(dataCursor));
+                } while (dataCursor.moveToNext());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "advancedSearch error", e);
+        } finally {
+            if (dataCursor != null) dataCursor.close();
+        }
+        return foundHikes;
+    }
+
+    private void buildCriteriaWhere(ResolvedSchema s, HikeSearchCriteria criteria,
+                                    StringBuilder whereClause, List<String> whereArgs) {
+        String name = criteria.getName();
+        if (name != null && !name.isEmpty()) {
+            whereClause.append(" AND ").append(COL_HIKE_NAME).append(" LIKE ?");
+            whereArgs.add("%" + name + "%");
+        }
+
+        String location = criteria.getLocation();
+        if (location != null && !location.isEmpty()) {
+            whereClause.append(" AND ").append(COL_HIKE_LOCATION).append(" LIKE ?");
+            whereArgs.add("%" + location + "%");
+        }
+
+        appendRange(whereClause, whereArgs, COL_HIKE_DISTANCE, criteria.getMinDistance(), criteria.getMaxDistance());
+        appendRange(whereClause, whereArgs, COL_HIKE_TEAM, criteria.getMinGroupSize(), criteria.getMaxGroupSize());
+
+        // the date range is served by idx_hikes_live_date, the other filters run on its rows
+        LocalDate from = criteria.getFromDate();
+        LocalDate to = criteria.getToDate();
+        appendRange(whereClause, whereArgs, COL_HIKE_DATE_EPOCH,
+                from != null ? from.toEpochDay() : null, to != null ? to.toEpochDay() : null);
+
+        String dateText = criteria.getDateText();
+        if (dateText != null && !dateText.isEmpty()) {
+            whereClause.append(" AND ").append(COL_HIKE_DATE).append(" LIKE ?");
+            whereArgs.add("%" + dateText + "%");
+        }
+
+        if (!criteria.getDifficulties().isEmpty()) {
+            whereClause.append(" AND ").append(COL_HIKE_LEVEL).append(" COLLATE NOCASE IN (");
+            int n = 0;
+            for (String difficulty : criteria.getDifficulties()) {
+                whereClause.append(n++ > 0 ? ",?" : "?");
+                whereArgs.add(difficulty);
+            }
+            whereClause.append(")");
+        }
+
+        if (criteria.getParking() != null && s.hikeParkingRead != null) {
+            whereClause.append(" AND ").append(s.hikeParkingRead).append(" = ?");
+            whereArgs.add(criteria.getParking() ? "1" : "0");
+        }
+    }
+
+    private void appendRange(StringBuilder whereClause, List<String> whereArgs, String column,
+                             Number min, Number max) {
+        if (min != null) {
+            whereClause.append(" AND ").append(column).append(" >= ?");
+            whereArgs.add(String.valueOf(min));
+        }
+        if (max != null) {
+            whereClause.append(" AND ").append(column).append(" <= ?");
+            whereArgs.add(String.valueOf(max));
+        }
+    }
+
+    // ------------------ Observations CRUD (defensive) ------------------
+
+    private ContentValues buildObsValues(ResolvedSchema s, Observation obs) {
+        ContentValues vals = new ContentValues();
+        if (s.obsHikeRef != null) vals.put(s.obsHikeRef, obs.getHikeId());
+        if (s.obsContent != null) vals.put(s.obsContent, safeString(obs.getObservationText()));
+
+        // time/timestamp variants - set all available to avoid NOT NULL fails
+        for (String col : s.obsTime) vals.put(col, safeString(obs.getTime()));
+        if (s.obsTimeEpoch != null) vals.put(s.obsTimeEpoch, EpochDates.toEpochMillis(obs.getTime()));
+
+        if (s.obsNotes != null) vals.put(s.obsNotes, safeString(obs.getComments()));
+        return vals;
+    }
+
+    public long addObservation(Observation obs) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        long insertId = -1;
+        try {
+            ContentValues vals = buildObsValues(schema(database), obs);
+            insertId = database.insert(OBS_TABLE, null, vals);
+            Log.d(TAG, "addObservation result id=" + insertId);
+            if (insertId > 0) {
+                obs.setId((int) insertId);
+                cache.invalidateObservations(obs.getHikeId());
+                publish(DbChange.observations(DbChange.Op.INSERT, obs.getHikeId(), (int) insertId));
+            }
+        } catch (SQLiteException sqle) {
+            Log.e(TAG, "addObservation SQLiteException", sqle);
+        } catch (Exception e) {
+            Log.e(TAG, "addObservation error", e);
+        }
+        return insertId;
+    }
+
+    public Observation getObservation(int obsId) {
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        Observation obsData = null;
+        try {
+            dataCursor = database.query(OBS_TABLE, null, COL_OBS_ID + "=?",
+                    new String[]{String.valueOf(obsId)}, null, null, null);
+
+            if (dataCursor != null && dataCursor.moveToFirst()) {
+                obsData = new ObservationCursorMapper(dataCursor).map(dataCursor);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "getObservation error", e);
+        } finally {
+            if (dataCursor != null) dataCursor.close();
+        }
+        return obsData;
+    }
+
+    public List<Observation> getObservationsByHike(int hikeId) {
+        List<Observation> allObs = cache.getObservations(hikeId);
+        if (allObs != null) return allObs;
+
+        allObs = new ArrayList<>();
+        long readGeneration = cache.generation();
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        try {
+            ResolvedSchema s = schema(database);
+            String where = (s.obsHikeRef != null ? s.obsHikeRef : COL_HIKE_REF) + "=?";
 
             dataCursor = database.query(OBS_TABLE, null,
                     where,
                     new String[]{String.valueOf(hikeId)}, null, null,
-                    orderBy);
+                    s.obsOrderBy);
 
             if (dataCursor != null && dataCursor.moveToFirst()) {
+                ObservationCursorMapper mapper = new ObservationCursorMapper(dataCursor);
                 do {
-                    allObs.add(buildObsFromCursor(dataCursor));
+                    allObs.add(mapper.map(dataCursor));
                 } while (dataCursor.moveToNext());
             }
+            cache.putObservations(hikeId, allObs, readGeneration);
         } catch (Exception e) {
             Log.e(TAG, "getObservationsByHike error", e);
         } finally {
             if (dataCursor != null) dataCursor.close();
-            database.close();
         }
         return allObs;
     }
@@ -585,24 +1197,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase database = this.getWritableDatabase();
         int affectedRows = 0;
         try {
-            Set<String> existingCols = getExistingColumns(database, OBS_TABLE);
-            ContentValues vals = new ContentValues();
-
-            if (existingCols.contains(COL_HIKE_REF)) vals.put(COL_HIKE_REF, obs.getHikeId());
-            else if (existingCols.contains("hike")) vals.put("hike", obs.getHikeId());
-
-            if (existingCols.contains(COL_OBS_CONTENT)) vals.put(COL_OBS_CONTENT, safeString(obs.getObservationText()));
-            if (existingCols.contains("time")) vals.put("time", safeString(obs.getTime()));
-            if (existingCols.contains("timestamp")) vals.put("timestamp", safeString(obs.getTime()));
-            if (existingCols.contains("obs_time")) vals.put("obs_time", safeString(obs.getTime()));
-            if (existingCols.contains(COL_OBS_NOTES)) vals.put(COL_OBS_NOTES, safeString(obs.getComments()));
-
+            ContentValues vals = buildObsValues(schema(database), obs);
             affectedRows = database.update(OBS_TABLE, vals, COL_OBS_ID + "=?",
                     new String[]{String.valueOf(obs.getId())});
+            if (affectedRows > 0) {
+                cache.invalidateObservations(obs.getHikeId());
+                publish(DbChange.observations(DbChange.Op.UPDATE, obs.getHikeId(), obs.getId()));
+            }
         } catch (Exception e) {
             Log.e(TAG, "updateObservation error", e);
-        } finally {
-            database.close();
         }
         return affectedRows;
     }
@@ -610,76 +1213,911 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void deleteObservation(int obsId) {
         SQLiteDatabase database = this.getWritableDatabase();
         try {
-            database.delete(OBS_TABLE, COL_OBS_ID + "=?", new String[]{String.valueOf(obsId)});
+            String[] args = new String[]{String.valueOf(obsId)};
+            // listeners are told which hike lost the observation
+            long hikeId = DatabaseUtils.longForQuery(database,
+                    "SELECT " + COL_HIKE_REF + " FROM " + OBS_TABLE + " WHERE " + COL_OBS_ID + "=?", args);
+            if (database.delete(OBS_TABLE, COL_OBS_ID + "=?", args) > 0) {
+                cache.invalidateObservations((int) hikeId);
+                publish(DbChange.observations(DbChange.Op.DELETE, (int) hikeId, obsId));
+            }
+        } catch (SQLiteDoneException notFound) {
+            Log.w(TAG, "deleteObservation: no observation id=" + obsId);
         } catch (Exception e) {
             Log.e(TAG, "deleteObservation error", e);
+        }
+    }
+
+    // ------------------ Aggregates ------------------
+
+    /**
+     * Observation count and latest observation time for each of the given hikes, in
+     * one grouped query. Hikes without observations are left out of the map.
+     */
+    public Map<Integer, ObservationSummary> getObservationSummaries(Collection<Integer> hikeIds) {
+        Map<Integer, ObservationSummary> summaries = new HashMap<>();
+        if (hikeIds == null || hikeIds.isEmpty()) return summaries;
+
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        try {
+            ResolvedSchema s = schema(database);
+            String ref = s.obsHikeRef != null ? s.obsHikeRef : COL_HIKE_REF;
+            String latest = s.obsTimeEpoch != null ? s.obsTimeEpoch : s.obsTimeRead;
+            StringBuilder ids = new StringBuilder();
+            for (int id : hikeIds) {
+                if (ids.length() > 0) ids.append(',');
+                ids.append(id);
+            }
+
+            // with MAX() SQLite takes the bare time column from the row holding the max
+            dataCursor = database.rawQuery("SELECT " + ref + ", COUNT(*), " +
+                    (latest != null ? "MAX(" + latest + ")" : "NULL") + ", " +
+                    (s.obsTimeRead != null ? s.obsTimeRead : "NULL") +
+                    " FROM " + OBS_TABLE + " WHERE " + ref + " IN (" + ids + ") GROUP BY " + ref, null);
+            while (dataCursor.moveToNext()) {
+                int hikeId = dataCursor.getInt(0);
+                summaries.put(hikeId, new ObservationSummary(hikeId, dataCursor.getInt(1), dataCursor.getString(3)));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "getObservationSummaries error", e);
         } finally {
-            database.close();
+            if (dataCursor != null) dataCursor.close();
         }
+        return summaries;
+    }
+
+    /**
+     * Totals for the stats screen, read from the trigger-maintained hike_stats table:
+     * one row per month/difficulty/location, however many hikes there are.
+     */
+    public HikeStats getHikeStats() {
+        HikeStats stats = new HikeStats();
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        try {
+            dataCursor = database.rawQuery("SELECT dimension, key, hikes, distance, observations FROM " +
+                    HikeStatsTable.TABLE + " ORDER BY hikes DESC, key", null);
+
+            Map<String, Integer> months = new TreeMap<>(Collections.reverseOrder());
+            while (dataCursor.moveToNext()) {
+                String dimension = dataCursor.getString(0);
+                String key = dataCursor.getString(1);
+                int hikes = dataCursor.getInt(2);
+                if (HikeStatsTable.DIM_TOTAL.equals(dimension)) {
+                    stats.setTotalHikes(hikes);
+                    stats.setTotalDistance(dataCursor.getDouble(3));
+                    stats.setTotalObservations(dataCursor.getInt(4));
+                } else if (HikeStatsTable.DIM_DIFFICULTY.equals(dimension)) {
+                    stats.getHikesByDifficulty().put(key.isEmpty() ? "Unknown" : key, hikes);
+                } else if (HikeStatsTable.DIM_LOCATION.equals(dimension)) {
+                    stats.getHikesByLocation().put(key.isEmpty() ? "Unknown" : key, hikes);
+                } else if (HikeStatsTable.DIM_MONTH.equals(dimension)) {
+                    // '' holds hikes whose date could not be parsed
+                    if (!key.isEmpty()) months.put(key, hikes);
+                }
+            }
+            stats.getHikesByMonth().putAll(months);
+        } catch (Exception e) {
+            Log.e(TAG, "getHikeStats error", e);
+        } finally {
+            if (dataCursor != null) dataCursor.close();
+        }
+        return stats;
+    }
+
+    /** Recomputes hike_stats from scratch, e.g. after writes made with the triggers missing. */
+    public void rebuildHikeStats() {
+        try {
+            HikeStatsTable.rebuild(getWritableDatabase(), HIKES_TABLE, OBS_TABLE);
+        } catch (Exception e) {
+            Log.e(TAG, "rebuildHikeStats error", e);
+        }
+    }
+
+    /**
+     * Compares hike_stats with a full recompute and returns the number of differing
+     * rows, 0 when consistent. Costs a full scan; meant for debugging and checks.
+     */
+    public int checkHikeStats() {
+        try {
+            int mismatches = HikeStatsTable.countMismatches(getReadableDatabase(), HIKES_TABLE, OBS_TABLE);
+            if (mismatches > 0) Log.w(TAG, HikeStatsTable.TABLE + " differs from recompute in " + mismatches + " rows");
+            return mismatches;
+        } catch (Exception e) {
+            Log.e(TAG, "checkHikeStats error", e);
+            return -1;
+        }
+    }
+
+    // ------------------ Export ------------------
+
+    /**
+     * Every hike LEFT JOINed with its observations, one row per observation (or one row
+     * for a hike without any), ordered by hike id then observation id. Hike columns use
+     * the names HikeCursorMapper reads; observation columns are prefixed obs_.
+     * The caller walks it forward once and closes it; the cursor window keeps memory flat.
+     * Open it between beginSnapshot() and endSnapshot(): each window refill re-runs the
+     * query at an offset, and outside a read transaction rows written in between would
+     * be skipped or exported twice.
+     */
+    Cursor openExportCursor() {
+        SQLiteDatabase database = snapshotOrReadable();
+        ResolvedSchema s = schema(database);
+        String ref = s.obsHikeRef != null ? s.obsHikeRef : COL_HIKE_REF;
+        String sql = "SELECT " + hikeSelectColumns(s) + ", " +
+                "o." + COL_OBS_ID + " AS obs_id, " +
+                column("o", s.obsContent, "obs_text") + ", " +
+                column("o", s.obsTimeRead, "obs_time") + ", " +
+                column("o", s.obsNotes, "obs_comments") +
+                " FROM " + HIKES_TABLE + " h LEFT JOIN " + OBS_TABLE + " o ON o." + ref + " = h." + COL_ID +
+                " WHERE h." + LIVE + " ORDER BY h." + COL_ID + ", o." + COL_OBS_ID;
+        return database.rawQuery(sql, null);
+    }
+
+    // hike columns of alias h under the names HikeCursorMapper reads
+    private static String hikeSelectColumns(ResolvedSchema s) {
+        return "h." + COL_ID + " AS id, " +
+                column("h", s.hikeName, "name") + ", " +
+                column("h", s.hikeLocation, "location") + ", " +
+                column("h", s.hikeDate, "date") + ", " +
+                column("h", s.hikeParkingRead, "parking") + ", " +
+                column("h", s.hikeDistance, "length") + ", " +
+                column("h", s.hikeLevel, "difficulty") + ", " +
+                column("h", s.hikeInfo, "description") + ", " +
+                column("h", s.hikeWeather, "weather") + ", " +
+                column("h", s.hikeTeam, "group_size");
+    }
+
+    // "alias.column AS name", or NULL when this install has no such column
+    private static String column(String alias, String physical, String name) {
+        return (physical != null ? alias + "." + physical : "NULL") + " AS " + name;
+    }
+
+    // ------------------ Backup ------------------
+
+    /** Sequence number of the latest logged change; 0 for a database never written. */
+    public long getChangeCounter() {
+        try {
+            return DatabaseUtils.longForQuery(snapshotOrReadable(), ChangeLogTable.currentSeqSql(), null);
+        } catch (Exception e) {
+            Log.e(TAG, "getChangeCounter error", e);
+            return 0;
+        }
+    }
+
+    // a private read-only connection per thread that is between beginSnapshot and endSnapshot
+    private final ThreadLocal<SQLiteDatabase> snapshot = new ThreadLocal<>();
+
+    /**
+     * Opens a read transaction on a private read-only connection, so every cursor this
+     * thread opens until endSnapshot() reads the same state, even when its window is
+     * refilled. Under WAL a reader holds no lock writers wait for, so they carry on.
+     */
+    void beginSnapshot() {
+        SQLiteDatabase reader = SQLiteDatabase.openDatabase(getReadableDatabase().getPath(), null,
+                SQLiteDatabase.OPEN_READONLY);
+        try {
+            // SAVEPOINT outside a transaction is a deferred BEGIN; the framework's own
+            // beginTransaction variants all take the write lock
+            reader.execSQL("SAVEPOINT snapshot");
+            // the first read fixes the snapshot
+            DatabaseUtils.longForQuery(reader, "SELECT COUNT(*) FROM sqlite_master", null);
+        } catch (RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        snapshot.set(reader);
+    }
+
+    void endSnapshot() {
+        SQLiteDatabase reader = snapshot.get();
+        if (reader == null) return;
+        snapshot.remove();
+        try {
+            reader.execSQL("RELEASE snapshot");
+        } catch (Exception e) {
+            Log.e(TAG, "endSnapshot error", e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // the snapshot connection while this thread holds one, the shared pool otherwise
+    private SQLiteDatabase snapshotOrReadable() {
+        SQLiteDatabase reader = snapshot.get();
+        return reader != null ? reader : getReadableDatabase();
+    }
+
+    /** Live hikes changed after sinceSeq (all of them for 0), by id, with HikeCursorMapper's column names. */
+    Cursor openHikesChangedSince(long sinceSeq) {
+        SQLiteDatabase database = snapshotOrReadable();
+        String sql = "SELECT " + hikeSelectColumns(schema(database)) + " FROM " + HIKES_TABLE + " h WHERE h." + LIVE +
+                (sinceSeq > 0 ? " AND h." + COL_ID + " IN (" + changedIds(HIKES_TABLE, sinceSeq) + ")" : "") +
+                " ORDER BY h." + COL_ID;
+        return database.rawQuery(sql, null);
     }
 
-    // ------------------ Cursor -> Model helpers ------------------
+    /**
+     * Observations of live hikes changed after sinceSeq (all of them for 0), by id, with
+     * ObservationCursorMapper's names. An incremental also resends every observation of a
+     * changed hike, so a hike brought back by undoDelete comes back with them.
+     */
+    Cursor openObservationsChangedSince(long sinceSeq) {
+        SQLiteDatabase database = snapshotOrReadable();
+        ResolvedSchema s = schema(database);
+        String ref = "o." + (s.obsHikeRef != null ? s.obsHikeRef : COL_HIKE_REF);
+        String sql = "SELECT o." + COL_OBS_ID + " AS id, " +
+                column("o", s.obsHikeRef, "hike_id") + ", " +
+                column("o", s.obsContent, "observation_text") + ", " +
+                column("o", s.obsTimeRead, "time") + ", " +
+                column("o", s.obsNotes, "comments") +
+                " FROM " + OBS_TABLE + " o WHERE " + ref + " NOT IN (" + tombstonedIds() + ")" +
+                (sinceSeq > 0 ? " AND (o." + COL_OBS_ID + " IN (" + changedIds(OBS_TABLE, sinceSeq) + ") OR " +
+                        ref + " IN (" + changedIds(HIKES_TABLE, sinceSeq) + "))" : "") +
+                " ORDER BY o." + COL_OBS_ID;
+        return database.rawQuery(sql, null);
+    }
+
+    /** (tbl, row_id) of hikes and observations deleted or tombstoned after sinceSeq. */
+    Cursor openDeletionsSince(long sinceSeq) {
+        String since = String.valueOf(sinceSeq);
+        return snapshotOrReadable().rawQuery("SELECT tbl, row_id FROM " + ChangeLogTable.TABLE +
+                " WHERE seq > ? AND op = '" + ChangeLogTable.OP_DELETE + "'" +
+                " UNION ALL SELECT '" + HIKES_TABLE + "', " + COL_ID + " FROM " + HIKES_TABLE +
+                " WHERE " + COL_ID + " IN (" + changedIds(HIKES_TABLE, sinceSeq) + ") AND " +
+                COL_HIKE_DELETED_AT + " IS NOT NULL ORDER BY 1, 2", new String[]{since});
+    }
+
+    static boolean isHikesTable(String table) {
+        return HIKES_TABLE.equals(table);
+    }
+
+    // ids of table logged after sinceSeq, through the seq index of the change log
+    private static String changedIds(String table, long sinceSeq) {
+        return "SELECT row_id FROM " + ChangeLogTable.TABLE + " WHERE tbl = '" + table + "' AND seq > " + sinceSeq;
+    }
+
+    // served by idx_hikes_deleted, so it costs the number of tombstones
+    private static String tombstonedIds() {
+        return "SELECT " + COL_ID + " FROM " + HIKES_TABLE + " WHERE " + COL_HIKE_DELETED_AT + " IS NOT NULL";
+    }
+
+    /** Row writes available to a restore; all of them run inside its single transaction. */
+    interface RestoreWriter {
+        void putHike(Hike hike);
 
-    private Hike buildHikeFromCursor(Cursor dataCursor) {
-        Hike hikeData = new Hike();
-        try { hikeData.setId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow(COL_ID))); } catch (Exception e) { hikeData.setId(0); }
-        try { hikeData.setName(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_NAME))); } catch (Exception e) { hikeData.setName(""); }
-        try { hikeData.setLocation(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_LOCATION))); } catch (Exception e) { hikeData.setLocation(""); }
-        try { hikeData.setDate(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_DATE))); } catch (Exception e) { hikeData.setDate(""); }
+        void putObservation(Observation obs);
 
-        // Read parking: prefer parking_available (legacy), fallback to parking
+        void deleteHike(int hikeId);
+
+        void deleteObservation(int obsId);
+    }
+
+    interface RestoreBody {
+        void run(RestoreWriter writer) throws Exception;
+    }
+
+    /**
+     * Runs body in one transaction: with replaceAll every hike and observation is
+     * deleted first, and put* inserts rows under their own ids; otherwise put* updates
+     * an existing row or inserts it. Anything thrown rolls the whole restore back.
+     * Listeners get a CLEAR afterwards. Returns true if the restore committed.
+     */
+    boolean restore(boolean replaceAll, RestoreBody body) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        ResolvedSchema s = schema(database);
+        boolean committed = false;
+        database.beginTransaction();
         try {
-            int val = -1;
-            if (columnIndexExists(dataCursor, "parking_available")) {
-                val = dataCursor.getInt(dataCursor.getColumnIndexOrThrow("parking_available"));
-            } else if (columnIndexExists(dataCursor, COL_HIKE_PARKING)) {
-                val = dataCursor.getInt(dataCursor.getColumnIndexOrThrow(COL_HIKE_PARKING));
+            if (replaceAll) {
+                database.delete(OBS_TABLE, null, null);
+                database.delete(HIKES_TABLE, null, null);
             }
-            hikeData.setParking(val == 1);
+            body.run(new RestoreWriter() {
+                @Override
+                public void putHike(Hike hike) {
+                    ContentValues vals = buildHikeValues(s, hike);
+                    // a hike in the backup is live, even if it was deleted here since
+                    vals.putNull(COL_HIKE_DELETED_AT);
+                    put(HIKES_TABLE, COL_ID, hike.getId(), vals);
+                }
+
+                @Override
+                public void putObservation(Observation obs) {
+                    put(OBS_TABLE, COL_OBS_ID, obs.getId(), buildObsValues(s, obs));
+                }
+
+                @Override
+                public void deleteHike(int hikeId) {
+                    database.delete(HIKES_TABLE, COL_ID + "=?", new String[]{String.valueOf(hikeId)});
+                }
+
+                @Override
+                public void deleteObservation(int obsId) {
+                    database.delete(OBS_TABLE, COL_OBS_ID + "=?", new String[]{String.valueOf(obsId)});
+                }
+
+                // after replaceAll the table is empty, so skip the update attempt
+                private void put(String table, String idColumn, int id, ContentValues vals) {
+                    String[] args = {String.valueOf(id)};
+                    if (replaceAll || database.update(table, vals, idColumn + "=?", args) == 0) {
+                        vals.put(idColumn, id);
+                        database.insertOrThrow(table, null, vals);
+                    }
+                }
+            });
+            database.setTransactionSuccessful();
+            committed = true;
         } catch (Exception e) {
-            hikeData.setParking(false);
+            Log.e(TAG, "restore error", e);
+        } finally {
+            database.endTransaction();
+        }
+        if (committed) {
+            cache.clear();
+            checkpoint(false);
+            publish(DbChange.hikes(DbChange.Op.CLEAR));
         }
+        return committed;
+    }
 
-        try { hikeData.setLength(dataCursor.getDouble(dataCursor.getColumnIndexOrThrow(COL_HIKE_DISTANCE))); } catch (Exception e) { hikeData.setLength(0); }
-        try { hikeData.setDifficulty(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_LEVEL))); } catch (Exception e) { hikeData.setDifficulty("Easy"); }
-        try { hikeData.setDescription(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_INFO))); } catch (Exception e) { hikeData.setDescription(""); }
-        try { hikeData.setWeather(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_HIKE_WEATHER))); } catch (Exception e) { hikeData.setWeather(""); }
-        try { hikeData.setGroupSize(dataCursor.getInt(dataCursor.getColumnIndexOrThrow(COL_HIKE_TEAM))); } catch (Exception e) { hikeData.setGroupSize(0); }
-        return hikeData;
+    // ------------------ Sync ------------------
+
+    static final String SYNC_HIKES = HIKES_TABLE;
+    static final String SYNC_OBSERVATIONS = OBS_TABLE;
+
+    // a cursor stored in sync_state; 0 before the first sync
+    long getSyncCursor(String key) {
+        try {
+            return DatabaseUtils.longForQuery(getReadableDatabase(),
+                    "SELECT IFNULL(MAX(value), 0) FROM " + SyncTables.STATE + " WHERE key = ?", new String[]{key});
+        } catch (Exception e) {
+            Log.e(TAG, "getSyncCursor error", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Up to limit local changes to table logged after afterSeq, oldest first, that the
+     * server has not seen: rows written by a pull are skipped. Rows without a server id
+     * get a new one, saved before it is pushed so a retry after a crash sends the same id;
+     * a deleted row that never got one has a null globalId. Changes to rows deleted or
+     * tombstoned since are left out in the query, so they do not use up the limit.
+     */
+    List<SyncRow> loadPendingChanges(String table, long afterSeq, int limit) {
+        List<SyncRow> rows = new ArrayList<>();
+        SQLiteDatabase database = this.getWritableDatabase();
+        Cursor c = null;
+        // the 'D' entry comes with the delete or the purge
+        String present = HIKES_TABLE.equals(table)
+                ? "EXISTS (SELECT 1 FROM " + HIKES_TABLE + " h WHERE h." + COL_ID + " = c.row_id AND h." + LIVE + ")"
+                : "EXISTS (SELECT 1 FROM " + OBS_TABLE + " o WHERE o." + COL_OBS_ID + " = c.row_id)";
+        database.beginTransactionNonExclusive();
+        try {
+            c = database.rawQuery("SELECT c.row_id, c.op, c.seq, s.global_id, s.version FROM " + ChangeLogTable.TABLE +
+                    " c LEFT JOIN " + SyncTables.ROWS + " s ON s.tbl = c.tbl AND s.row_id = c.row_id" +
+                    " WHERE c.tbl = ? AND c.seq > ? AND (s.synced_seq IS NULL OR s.synced_seq < c.seq)" +
+                    " AND (c.op = '" + ChangeLogTable.OP_DELETE + "' OR " + present + ")" +
+                    " ORDER BY c.seq LIMIT " + limit, new String[]{table, String.valueOf(afterSeq)});
+            while (c.moveToNext()) {
+                int rowId = c.getInt(0);
+                boolean deleted = ChangeLogTable.OP_DELETE.equals(c.getString(1));
+                String globalId = c.isNull(3) ? null : c.getString(3);
+                long version = c.isNull(4) ? 0 : c.getLong(4);
+
+                Hike hike = null;
+                Observation obs = null;
+                if (!deleted) {
+                    if (HIKES_TABLE.equals(table)) {
+                        if ((hike = getHike(rowId)) == null) continue;
+                    } else if ((obs = getObservation(rowId)) == null) {
+                        continue;
+                    }
+                    if (globalId == null) {
+                        globalId = UUID.randomUUID().toString();
+                        // version 0 and synced_seq 0: known locally, the change is still pending
+                        putSyncRow(database, table, rowId, globalId, 0, 0);
+                    }
+                }
+
+                SyncRow row;
+                if (deleted) {
+                    row = new SyncRow(globalId, version, true, null, null, null);
+                } else if (hike != null) {
+                    row = new SyncRow(globalId, version, false, hike, null, null);
+                } else {
+                    row = new SyncRow(globalId, version, false, null, obs,
+                            syncGlobalId(database, HIKES_TABLE, obs.getHikeId()));
+                }
+                row.localId = rowId;
+                row.seq = c.getLong(2);
+                rows.add(row);
+            }
+            database.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "loadPendingChanges error", e);
+            rows.clear();
+        } finally {
+            if (c != null) c.close();
+            database.endTransaction();
+        }
+        return rows;
     }
 
-    private boolean columnIndexExists(Cursor c, String colName) {
+    /**
+     * Records the server's answer to a pushed batch and moves the push cursor to
+     * cursorSeq, in one transaction. versions[i] is the new server version of rows[i],
+     * or -1 for a row the server rejected (applied with applyPulledRows instead).
+     */
+    boolean markPushed(String table, List<SyncRow> rows, long[] versions, long cursorSeq) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        database.beginTransactionNonExclusive();
         try {
-            c.getColumnIndexOrThrow(colName);
+            for (int i = 0; i < rows.size(); i++) {
+                SyncRow row = rows.get(i);
+                if (versions[i] < 0) continue;
+                if (row.deleted) {
+                    database.delete(SyncTables.ROWS, "tbl = ? AND row_id = ?",
+                            new String[]{table, String.valueOf(row.localId)});
+                } else {
+                    // a change made since the batch was read has a newer seq and stays pending
+                    putSyncRow(database, table, row.localId, row.globalId, versions[i], row.seq);
+                }
+            }
+            putSyncState(database, SyncTables.pushCursorKey(table), cursorSeq);
+            database.setTransactionSuccessful();
             return true;
         } catch (Exception e) {
+            Log.e(TAG, "markPushed error", e);
             return false;
+        } finally {
+            database.endTransaction();
         }
     }
 
-    private Observation buildObsFromCursor(Cursor dataCursor) {
-        Observation obsData = new Observation();
-        try { obsData.setId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow(COL_OBS_ID))); } catch (Exception e) { obsData.setId(0); }
-        try { obsData.setHikeId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow(COL_HIKE_REF))); } catch (Exception e) {
-            // fallback variant
-            try { obsData.setHikeId(dataCursor.getInt(dataCursor.getColumnIndexOrThrow("hike"))); } catch (Exception ex) { obsData.setHikeId(0); }
+    /**
+     * Applies server rows to table in one transaction, skipping any the device already
+     * has at the same or a newer version; the server copy wins over unpushed local edits.
+     * When cursorKey is set, the stored cursor moves to cursorValue in the same
+     * transaction, so an interrupted pull resumes after the last applied batch.
+     * Once committed, only the rows written are evicted from the cache and announced.
+     * Returns the number of rows written, or -1 if the batch was rolled back.
+     */
+    int applyPulledRows(String table, List<SyncRow> rows, String cursorKey, long cursorValue) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        ResolvedSchema s = schema(database);
+        boolean hikes = HIKES_TABLE.equals(table);
+        String idColumn = hikes ? COL_ID : COL_OBS_ID;
+        PulledChanges changes = new PulledChanges();
+        int applied = 0;
+        database.beginTransactionNonExclusive();
+        try {
+            for (SyncRow row : rows) {
+                long localId = -1;
+                long knownVersion = -1;
+                Cursor c = database.rawQuery("SELECT row_id, version FROM " + SyncTables.ROWS +
+                        " WHERE tbl = ? AND global_id = ?", new String[]{table, row.globalId});
+                try {
+                    if (c.moveToFirst()) {
+                        localId = c.getLong(0);
+                        knownVersion = c.getLong(1);
+                    }
+                } finally {
+                    c.close();
+                }
+                if (knownVersion >= row.version) continue;
+
+                String[] idArgs = {String.valueOf(localId)};
+                // live hike, or the hike of the observation, as the row is before this write
+                int before = localId < 0 ? -1 : (hikes ? liveHikeId(database, localId) : observationHikeId(database, localId));
+                if (row.deleted) {
+                    if (localId >= 0) {
+                        database.delete(table, idColumn + "=?", idArgs);
+                        database.delete(SyncTables.ROWS, "tbl = ? AND row_id = ?", new String[]{table, idArgs[0]});
+                        if (hikes) {
+                            if (before >= 0) changes.hike(DbChange.Op.DELETE, (int) localId);
+                        } else if (before >= 0) {
+                            changes.observation(DbChange.Op.DELETE, before, (int) localId);
+                        }
+                        applied++;
+                    }
+                    continue;
+                }
+
+                ContentValues vals;
+                if (hikes) {
+                    vals = buildHikeValues(s, row.hike);
+                    // the server's live copy wins over a local delete that was not purged yet
+                    vals.putNull(COL_HIKE_DELETED_AT);
+                } else {
+                    Cursor parent = database.rawQuery("SELECT row_id FROM " + SyncTables.ROWS +
+                            " WHERE tbl = ? AND global_id = ?", new String[]{HIKES_TABLE, row.hikeGlobalId});
+                    try {
+                        if (!parent.moveToFirst()) {
+                            Log.w(TAG, "pulled observation " + row.globalId + " has unknown hike " + row.hikeGlobalId);
+                            continue;
+                        }
+                        row.observation.setHikeId(parent.getInt(0));
+                    } finally {
+                        parent.close();
+                    }
+                    vals = buildObsValues(s, row.observation);
+                }
+                boolean inserted = localId < 0 || database.update(table, vals, idColumn + "=?", idArgs) == 0;
+                if (inserted) localId = database.insertOrThrow(table, null, vals);
+                if (hikes) {
+                    // a tombstoned hike brought back is new to every list, as after undoDelete
+                    changes.hike(inserted || before < 0 ? DbChange.Op.INSERT : DbChange.Op.UPDATE, (int) localId);
+                } else if (inserted || before < 0) {
+                    changes.observation(DbChange.Op.INSERT, row.observation.getHikeId(), (int) localId);
+                } else if (before != row.observation.getHikeId()) {
+                    // moved to another hike on the server
+                    changes.observation(DbChange.Op.DELETE, before, (int) localId);
+                    changes.observation(DbChange.Op.INSERT, row.observation.getHikeId(), (int) localId);
+                } else {
+                    changes.observation(DbChange.Op.UPDATE, before, (int) localId);
+                }
+                // the write just logged a change; mark it as already on the server
+                long seq = DatabaseUtils.longForQuery(database, "SELECT seq FROM " + ChangeLogTable.TABLE +
+                        " WHERE tbl = ? AND row_id = ?", new String[]{table, String.valueOf(localId)});
+                putSyncRow(database, table, localId, row.globalId, row.version, seq);
+                applied++;
+            }
+            if (cursorKey != null) putSyncState(database, cursorKey, cursorValue);
+            database.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e(TAG, "applyPulledRows error", e);
+            applied = -1;
+        } finally {
+            database.endTransaction();
         }
-        try { obsData.setObservationText(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_OBS_CONTENT))); } catch (Exception e) { obsData.setObservationText(""); }
+        if (applied > 0) publishPulled(changes);
+        return applied;
+    }
 
-        // time/time variant
-        String timeVal = "";
+    // id of the hike if it exists and is not tombstoned, -1 otherwise
+    private static int liveHikeId(SQLiteDatabase database, long hikeId) {
+        Cursor c = database.rawQuery("SELECT " + COL_ID + " FROM " + HIKES_TABLE + " WHERE " + COL_ID + " = ? AND " +
+                LIVE, new String[]{String.valueOf(hikeId)});
         try {
-            if (columnIndexExists(dataCursor, "time")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("time"));
-            else if (columnIndexExists(dataCursor, "timestamp")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("timestamp"));
-            else if (columnIndexExists(dataCursor, "obs_time")) timeVal = dataCursor.getString(dataCursor.getColumnIndexOrThrow("obs_time"));
+            return c.moveToFirst() ? c.getInt(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    // hike the observation belongs to, -1 if there is no such observation
+    private static int observationHikeId(SQLiteDatabase database, long obsId) {
+        Cursor c = database.rawQuery("SELECT " + COL_HIKE_REF + " FROM " + OBS_TABLE + " WHERE " + COL_OBS_ID + " = ?",
+                new String[]{String.valueOf(obsId)});
+        try {
+            return c.moveToFirst() ? c.getInt(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    // local ids written by one pulled batch, by operation (and by hike for observations)
+    private static final class PulledChanges {
+        final Map<DbChange.Op, Set<Integer>> hikes = new EnumMap<>(DbChange.Op.class);
+        final Map<Integer, Map<DbChange.Op, Set<Integer>>> observations = new LinkedHashMap<>();
+
+        void hike(DbChange.Op op, int id) {
+            ids(hikes, op).add(id);
+        }
+
+        void observation(DbChange.Op op, int hikeId, int id) {
+            Map<DbChange.Op, Set<Integer>> byOp = observations.get(hikeId);
+            if (byOp == null) {
+                byOp = new EnumMap<>(DbChange.Op.class);
+                observations.put(hikeId, byOp);
+            }
+            ids(byOp, op).add(id);
+        }
+
+        private static Set<Integer> ids(Map<DbChange.Op, Set<Integer>> byOp, DbChange.Op op) {
+            Set<Integer> ids = byOp.get(op);
+            if (ids == null) {
+                ids = new LinkedHashSet<>();
+                byOp.put(op, ids);
+            }
+            return ids;
+        }
+    }
+
+    // evicts and announces only the rows a committed pull wrote
+    private void publishPulled(PulledChanges changes) {
+        for (Map.Entry<DbChange.Op, Set<Integer>> entry : changes.hikes.entrySet()) {
+            for (int id : entry.getValue()) cache.removeHike(id);
+            publish(DbChange.hikes(entry.getKey(), toArray(entry.getValue())));
+        }
+        for (Map.Entry<Integer, Map<DbChange.Op, Set<Integer>>> hike : changes.observations.entrySet()) {
+            cache.invalidateObservations(hike.getKey());
+            for (Map.Entry<DbChange.Op, Set<Integer>> entry : hike.getValue().entrySet()) {
+                publish(DbChange.observations(entry.getKey(), hike.getKey(), toArray(entry.getValue())));
+            }
+        }
+    }
+
+    private static int[] toArray(Collection<Integer> ids) {
+        int[] array = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) array[i++] = id;
+        return array;
+    }
+
+    private static String syncGlobalId(SQLiteDatabase database, String table, int rowId) {
+        Cursor c = database.rawQuery("SELECT global_id FROM " + SyncTables.ROWS + " WHERE tbl = ? AND row_id = ?",
+                new String[]{table, String.valueOf(rowId)});
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void putSyncRow(SQLiteDatabase database, String table, long rowId, String globalId,
+                                   long version, long syncedSeq) {
+        database.execSQL("INSERT OR REPLACE INTO " + SyncTables.ROWS +
+                        "(tbl, row_id, global_id, version, synced_seq) VALUES (?, ?, ?, ?, ?)",
+                new Object[]{table, rowId, globalId, version, syncedSeq});
+    }
+
+    private static void putSyncState(SQLiteDatabase database, String key, long value) {
+        database.execSQL("INSERT OR REPLACE INTO " + SyncTables.STATE + "(key, value) VALUES (?, ?)",
+                new Object[]{key, value});
+    }
+
+    // ------------------ Batch import ------------------
+
+    /** Case- and space-insensitive (name, location, date) key the importer treats as one hike. */
+    static String duplicateKey(String name, String location, String date) {
+        return normalizeKey(name) + '\u0001' + normalizeKey(location) + '\u0001' + normalizeKey(date);
+    }
+
+    private static String normalizeKey(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // duplicateKey of every stored hike, read in one pass
+    Set<String> loadDuplicateKeys() {
+        Set<String> keys = new HashSet<>();
+        SQLiteDatabase database = this.getReadableDatabase();
+        Cursor dataCursor = null;
+        try {
+            ResolvedSchema s = schema(database);
+            dataCursor = database.rawQuery("SELECT " + column("h", s.hikeName, "name") + ", " +
+                    column("h", s.hikeLocation, "location") + ", " + column("h", s.hikeDate, "date") +
+                    " FROM " + HIKES_TABLE + " h WHERE h." + LIVE, null);
+            while (dataCursor.moveToNext()) {
+                keys.add(duplicateKey(dataCursor.getString(0), dataCursor.getString(1), dataCursor.getString(2)));
+            }
         } catch (Exception e) {
-            timeVal = "";
+            Log.e(TAG, "loadDuplicateKeys error", e);
+        } finally {
+            if (dataCursor != null) dataCursor.close();
         }
-        obsData.setTime(timeVal);
+        return keys;
+    }
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    public interface BatchProgressListener {
+        void onProgress(int inserted, int total);
+    }
+
+    public int addHikes(List<Hike> hikes) {
+        return addHikes(hikes, DEFAULT_BATCH_SIZE, null);
+    }
+
+    /**
+     * Inserts hikes with one precompiled statement, committing every batchSize rows.
+     * Generated ids are written back into each Hike. A failing row rolls back only its
+     * own batch, whose hikes keep id 0, and the later batches still run. Returns the
+     * number of rows committed.
+     */
+    public int addHikes(List<Hike> hikes, int batchSize, BatchProgressListener listener) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        ResolvedSchema s = schema(database);
+        int committed = insertBatched(database, HIKES_TABLE, hikes, batchSize, listener,
+                hike -> buildHikeValues(s, hike), Hike::setId);
+        publishHikeInserts(hikes, committed);
+        return committed;
+    }
+
+    public int addObservations(List<Observation> observations) {
+        return addObservations(observations, DEFAULT_BATCH_SIZE, null);
+    }
+
+    public int addObservations(List<Observation> observations, int batchSize, BatchProgressListener listener) {
+        SQLiteDatabase database = this.getWritableDatabase();
+        ResolvedSchema s = schema(database);
+        int committed = insertBatched(database, OBS_TABLE, observations, batchSize, listener,
+                obs -> buildObsValues(s, obs), Observation::setId);
+        publishObservationInserts(observations);
+        return committed;
+    }
 
-        try { obsData.setComments(dataCursor.getString(dataCursor.getColumnIndexOrThrow(COL_OBS_NOTES))); } catch (Exception e) {
-            try { obsData.setComments(dataCursor.getString(dataCursor.getColumnIndexOrThrow("comments"))); } catch (Exception ex) { obsData.setComments(""); }
+    /**
+     * Inserts hikes together with their observations (observations.get(i) belongs to
+     * hikes.get(i)), batchSize hikes per transaction, so a hike is never committed
+     * without its observations. A failing row rolls back its batch, whose hikes and
+     * observations keep id 0, and the later batches still run.
+     * Returns the number of hikes committed.
+     */
+    public int addHikesWithObservations(List<Hike> hikes, List<List<Observation>> observations, int batchSize) {
+        if (hikes == null || hikes.isEmpty()) return 0;
+        if (batchSize <= 0) batchSize = DEFAULT_BATCH_SIZE;
+
+        SQLiteDatabase database = this.getWritableDatabase();
+        ResolvedSchema s = schema(database);
+        int total = hikes.size();
+        int committed = 0;
+        List<Observation> allObservations = new ArrayList<>();
+        RowInserter<Hike> hikeInserter = new RowInserter<>(database, HIKES_TABLE, hike -> buildHikeValues(s, hike));
+        RowInserter<Observation> obsInserter = new RowInserter<>(database, OBS_TABLE, obs -> buildObsValues(s, obs));
+        try {
+            for (int start = 0; start < total; start += batchSize) {
+                int end = Math.min(start + batchSize, total);
+                try {
+                    database.beginTransactionNonExclusive();
+                    try {
+                        for (int i = start; i < end; i++) {
+                            Hike hike = hikes.get(i);
+                            hike.setId((int) hikeInserter.insert(hike));
+                            for (Observation obs : observations.get(i)) {
+                                obs.setHikeId(hike.getId());
+                                obs.setId((int) obsInserter.insert(obs));
+                            }
+                        }
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                    committed += end - start;
+                } catch (Exception e) {
+                    Log.e(TAG, "addHikesWithObservations rolled back hikes " + start + "-" + (end - 1), e);
+                    // ids handed out inside the rolled back batch are no longer valid
+                    for (int i = start; i < end; i++) {
+                        hikes.get(i).setId(0);
+                        for (Observation obs : observations.get(i)) obs.setId(0);
+                    }
+                }
+            }
+        } finally {
+            hikeInserter.close();
+            obsInserter.close();
         }
-        return obsData;
+
+        for (int i = 0; i < total; i++) {
+            if (hikes.get(i).getId() > 0) allObservations.addAll(observations.get(i));
+        }
+        publishHikeInserts(hikes, committed);
+        publishObservationInserts(allObservations);
+        if (committed > batchSize) checkpoint(false);
+        return committed;
+    }
+
+    // caches and announces the hikes that got an id
+    private void publishHikeInserts(List<Hike> hikes, int committed) {
+        if (committed <= 0) return;
+        int[] ids = new int[committed];
+        int n = 0;
+        for (Hike hike : hikes) {
+            if (hike.getId() <= 0 || n == committed) continue;
+            ids[n++] = hike.getId();
+            cache.storeHike(hike);
+        }
+        publish(DbChange.hikes(DbChange.Op.INSERT, ids));
+    }
+
+    private void publishObservationInserts(List<Observation> observations) {
+        // one event per hike, so each observation screen only hears about its own rows
+        Map<Integer, List<Integer>> idsByHike = new HashMap<>();
+        for (Observation obs : observations) {
+            if (obs.getId() <= 0) continue;
+            List<Integer> ids = idsByHike.get(obs.getHikeId());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByHike.put(obs.getHikeId(), ids);
+            }
+            ids.add(obs.getId());
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : idsByHike.entrySet()) {
+            cache.invalidateObservations(entry.getKey());
+            int[] ids = new int[entry.getValue().size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = entry.getValue().get(i);
+            publish(DbChange.observations(DbChange.Op.INSERT, entry.getKey(), ids));
+        }
+    }
+
+    /**
+     * Inserts items batchSize rows per transaction. A batch that fails is rolled back and
+     * logged, its items get id 0, and the next batch still runs; the items that were
+     * committed are the ones with a non-zero id. Returns how many were committed.
+     */
+    private <T> int insertBatched(SQLiteDatabase database, String table, List<T> items, int batchSize,
+                                  BatchProgressListener listener,
+                                  Function<T, ContentValues> toValues, ObjIntConsumer<T> setId) {
+        if (items == null || items.isEmpty()) return 0;
+        if (batchSize <= 0) batchSize = DEFAULT_BATCH_SIZE;
+
+        int total = items.size();
+        int committed = 0;
+        RowInserter<T> inserter = new RowInserter<>(database, table, toValues);
+        try {
+            for (int start = 0; start < total; start += batchSize) {
+                int end = Math.min(start + batchSize, total);
+                try {
+                    database.beginTransactionNonExclusive();
+                    try {
+                        for (int i = start; i < end; i++) {
+                            T item = items.get(i);
+                            setId.accept(item, (int) inserter.insert(item));
+                        }
+                        database.setTransactionSuccessful();
+                    } finally {
+                        database.endTransaction();
+                    }
+                    committed += end - start;
+                } catch (Exception e) {
+                    Log.e(TAG, "insertBatched " + table + " rolled back rows " + start + "-" + (end - 1), e);
+                    // ids handed out inside the rolled back batch are no longer valid
+                    for (int i = start; i < end; i++) setId.accept(items.get(i), 0);
+                }
+                if (listener != null) listener.onProgress(committed, total);
+            }
+        } finally {
+            inserter.close();
+        }
+        if (committed > batchSize) checkpoint(false);
+        return committed;
+    }
+
+    // every row has the same columns, so the INSERT is compiled on the first row and rebound after
+    private static final class RowInserter<T> {
+        private final SQLiteDatabase database;
+        private final String table;
+        private final Function<T, ContentValues> toValues;
+        private List<String> columns;
+        private SQLiteStatement statement;
+
+        RowInserter(SQLiteDatabase database, String table, Function<T, ContentValues> toValues) {
+            this.database = database;
+            this.table = table;
+            this.toValues = toValues;
+        }
+
+        long insert(T item) {
+            ContentValues vals = toValues.apply(item);
+            if (statement == null) {
+                columns = new ArrayList<>(vals.keySet());
+                statement = database.compileStatement(buildInsertSql(table, columns));
+            }
+            statement.clearBindings();
+            for (int c = 0; c < columns.size(); c++) {
+                DatabaseUtils.bindObjectToProgram(statement, c + 1, vals.get(columns.get(c)));
+            }
+            return statement.executeInsert();
+        }
+
+        void close() {
+            if (statement != null) statement.close();
+        }
+    }
+
+    private static String buildInsertSql(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(",");
+                params.append(",");
+            }
+            sql.append('"').append(columns.get(i)).append('"');
+            params.append("?");
+        }
+        return sql.append(") VALUES (").append(params).append(")").toString();
     }
 }
@@ -0,0 +1,68 @@
+package com.example.mhike.database;
+
+import java.util.Arrays;
+
+/**
+ * One committed write, published by DatabaseHelper to its change listeners.
+ * ids are the affected row ids of the table (empty for CLEAR); for observation
+ * changes hikeId is the hike they belong to.
+ */
+public class DbChange {
+
+    public enum Table { HIKES, OBSERVATIONS }
+
+    public enum Op { INSERT, UPDATE, DELETE, CLEAR }
+
+    private final Table table;
+    private final Op op;
+    private final int[] ids;
+    private final int hikeId;
+
+    DbChange(Table table, Op op, int[] ids, int hikeId) {
+        this.table = table;
+        this.op = op;
+        this.ids = ids;
+        this.hikeId = hikeId;
+    }
+
+    static DbChange hikes(Op op, int... ids) {
+        return new DbChange(Table.HIKES, op, ids, 0);
+    }
+
+    static DbChange observations(Op op, int hikeId, int... ids) {
+        return new DbChange(Table.OBSERVATIONS, op, ids, hikeId);
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public int getHikeId() {
+        return hikeId;
+    }
+
+    // true if this change can affect the observation list of the given hike
+    public boolean affectsObservationsOf(int hikeId) {
+        if (op == Op.CLEAR) return true;
+        if (table == Table.OBSERVATIONS) return this.hikeId == hikeId;
+        // deleting a hike cascades to its observations
+        if (op == Op.DELETE) {
+            for (int id : ids) if (id == hikeId) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "DbChange{" + table + " " + op + " ids=" + Arrays.toString(ids) +
+                (table == Table.OBSERVATIONS ? " hikeId=" + hikeId : "") + '}';
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mhike.database;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Converts the dd/MM/yyyy and dd/MM/yyyy HH:mm strings the screens produce into
+ * sortable numbers (epoch day for hikes, epoch millis for observations).
+ * Unparseable text maps to null so the row still saves and simply sorts last.
+ */
+final class EpochDates {
+
+    private static final DateTimeFormatter HIKE_DATE = DateTimeFormatter.ofPattern("d/M/uuuu");
+    private static final DateTimeFormatter OBS_TIME = DateTimeFormatter.ofPattern("d/M/uuuu H:mm");
+
+    private EpochDates() {
+    }
+
+    static Long toEpochDay(String date) {
+        if (date == null) return null;
+        try {
+            return LocalDate.parse(date.trim(), HIKE_DATE).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    static Long toEpochMillis(String time) {
+        if (time == null) return null;
+        String text = time.trim();
+        try {
+            return LocalDateTime.parse(text, OBS_TIME)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // date-only values are taken as the start of that day
+            Long day = toEpochDay(text);
+            return day == null ? null : LocalDate.ofEpochDay(day)
+                    .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary snapshots of hikes and observations, much smaller than a copy of mhike.db
+ * (no indexes, FTS or free pages). A full snapshot holds every row; an incremental
+ * one holds the rows changed and deleted after the change counter of an earlier
+ * snapshot, so restoring a full snapshot and then its incrementals in order gives
+ * the state of the last one. A restore runs in one transaction.
+ *
+ * Layout: "MHBK", version, flags, since, until (varints, uncompressed), then the
+ * records, deflated when FLAG_COMPRESSED is set. Integers are unsigned LEB128
+ * varints; short strings are sent once and then referred to by index.
+ */
+public class HikeBackup {
+
+    private static final String TAG = "HikeBackup";
+
+    private static final byte[] MAGIC = {'M', 'H', 'B', 'K'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_HIKE = 1;
+    private static final int TAG_OBSERVATION = 2;
+    private static final int TAG_DELETE_HIKE = 3;
+    private static final int TAG_DELETE_OBSERVATION = 4;
+
+    // string references: 0 null, 1 literal follows, n >= 2 the (n - 2)th remembered string
+    private static final int STR_NULL = 0;
+    private static final int STR_LITERAL = 1;
+    private static final int STR_FIRST_REF = 2;
+    // names, places, dates and difficulties repeat; long free text rarely does
+    private static final int MAX_SHARED_CHARS = 64;
+    private static final int MAX_SHARED_STRINGS = 1 << 16;
+
+    public static class Result {
+        private final long sinceSeq;
+        private final long untilSeq;
+        private final long hikes;
+        private final long observations;
+        private final long deletions;
+        private final long bytes;
+        private final long millis;
+
+        Result(long sinceSeq, long untilSeq, long hikes, long observations, long deletions, long bytes, long millis) {
+            this.sinceSeq = sinceSeq;
+            this.untilSeq = untilSeq;
+            this.hikes = hikes;
+            this.observations = observations;
+            this.deletions = deletions;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+
+        // 0 for a full snapshot
+        public long getSinceSeq() {
+            return sinceSeq;
+        }
+
+        // pass this as sinceSeq to take the next incremental snapshot
+        public long getUntilSeq() {
+            return untilSeq;
+        }
+
+        public boolean isIncremental() {
+            return sinceSeq > 0;
+        }
+
+        public long getHikes() {
+            return hikes;
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public long getDeletions() {
+            return deletions;
+        }
+
+        // bytes written or read, as stored
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return (isIncremental() ? "incremental " + sinceSeq + ".." : "full ..") + untilSeq + ": " +
+                    hikes + " hikes, " + observations + " observations, " + deletions + " deletions, " +
+                    bytes + " bytes in " + millis + " ms";
+        }
+    }
+
+    /**
+     * Writes a snapshot of the rows changed after sinceSeq (everything for 0) to out,
+     * which is flushed but left open. Reads one DatabaseHelper snapshot, which holds up
+     * no writer, so run it on a reader thread. Returns null if reading or writing failed.
+     */
+    public Result backup(DatabaseHelper dbHelper, OutputStream out, long sinceSeq, boolean compress) {
+        long start = SystemClock.elapsedRealtime();
+        sinceSeq = Math.max(0, sinceSeq);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        long untilSeq;
+        long hikes = 0;
+        long observations = 0;
+        long deletions = 0;
+
+        Cursor c = null;
+        try {
+            dbHelper.beginSnapshot();
+            untilSeq = dbHelper.getChangeCounter();
+
+            counted.write(MAGIC);
+            writeVarLong(counted, FORMAT_VERSION);
+            writeVarLong(counted, compress ? FLAG_COMPRESSED : 0);
+            writeVarLong(counted, sinceSeq);
+            writeVarLong(counted, untilSeq);
+
+            Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            OutputStream body = compress
+                    ? new DeflaterOutputStream(counted, deflater, BUFFER_BYTES)
+                    : counted;
+            Writer w = new Writer(new BufferedOutputStream(body, BUFFER_BYTES));
+            try {
+                // deletions first; ids are never reused, so no row is both deleted and written
+                if (sinceSeq > 0) {
+                    c = dbHelper.openDeletionsSince(sinceSeq);
+                    while (c.moveToNext()) {
+                        w.varint(DatabaseHelper.isHikesTable(c.getString(0)) ? TAG_DELETE_HIKE : TAG_DELETE_OBSERVATION);
+                        w.varint(c.getLong(1));
+                        deletions++;
+                    }
+                    c.close();
+                }
+
+                // hikes before observations, so the foreign key holds throughout the restore
+                c = dbHelper.openHikesChangedSince(sinceSeq);
+                HikeCursorMapper hikeMapper = new HikeCursorMapper(c);
+                while (c.moveToNext()) {
+                    writeHike(w, hikeMapper.map(c));
+                    hikes++;
+                }
+                c.close();
+
+                c = dbHelper.openObservationsChangedSince(sinceSeq);
+                ObservationCursorMapper obsMapper = new ObservationCursorMapper(c);
+                while (c.moveToNext()) {
+                    writeObservation(w, obsMapper.map(c));
+                    observations++;
+                }
+                c.close();
+                c = null;
+
+                // counts let the restore tell a truncated file from a complete one
+                w.varint(TAG_END);
+                w.varint(hikes);
+                w.varint(observations);
+                w.varint(deletions);
+                w.out.flush();
+                if (body instanceof DeflaterOutputStream) ((DeflaterOutputStream) body).finish();
+                counted.flush();
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "backup error", e);
+            return null;
+        } finally {
+            if (c != null) c.close();
+            dbHelper.endSnapshot();
+        }
+
+        Result result = new Result(sinceSeq, untilSeq, hikes, observations, deletions, counted.count,
+                SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, "backup " + result);
+        return result;
+    }
+
+    /**
+     * Applies a snapshot read from in, which is left open. A full snapshot replaces
+     * every hike and observation; an incremental one is applied on top of the current
+     * rows. Nothing changes unless the whole file reads back cleanly.
+     * Returns null if the file is not a snapshot or the restore failed.
+     */
+    public Result restore(DatabaseHelper dbHelper, InputStream in) {
+        long start = SystemClock.elapsedRealtime();
+        CountingInputStream counted = new CountingInputStream(new BufferedInputStream(in, BUFFER_BYTES));
+        long sinceSeq;
+        long untilSeq;
+        boolean compressed;
+        try {
+            for (byte b : MAGIC) {
+                if (counted.read() != b) throw new IOException("not an M-Hike backup");
+            }
+            long version = readVarLong(counted);
+            if (version > FORMAT_VERSION) throw new IOException("backup format " + version + " is newer than this app");
+            compressed = (readVarLong(counted) & FLAG_COMPRESSED) != 0;
+            sinceSeq = readVarLong(counted);
+            untilSeq = readVarLong(counted);
+        } catch (IOException e) {
+            Log.e(TAG, "restore error", e);
+            return null;
+        }
+
+        long[] counts = new long[3];
+        Inflater inflater = compressed ? new Inflater() : null;
+        try {
+            InputStream body = compressed ? new InflaterInputStream(counted, inflater, BUFFER_BYTES) : counted;
+            Reader r = new Reader(new BufferedInputStream(body, BUFFER_BYTES));
+            boolean committed = dbHelper.restore(sinceSeq == 0, writer -> {
+                while (true) {
+                    int tag = (int) r.varint();
+                    switch (tag) {
+                        case TAG_HIKE:
+                            writer.putHike(readHike(r));
+                            counts[0]++;
+                            break;
+                        case TAG_OBSERVATION:
+                            writer.putObservation(readObservation(r));
+                            counts[1]++;
+                            break;
+                        case TAG_DELETE_HIKE:
+                            writer.deleteHike((int) r.varint());
+                            counts[2]++;
+                            break;
+                        case TAG_DELETE_OBSERVATION:
+                            writer.deleteObservation((int) r.varint());
+                            counts[2]++;
+                            break;
+                        case TAG_END:
+                            if (r.varint() != counts[0] || r.varint() != counts[1] || r.varint() != counts[2]) {
+                                throw new IOException("backup record counts do not match");
+                            }
+                            return;
+                        default:
+                            throw new IOException("unknown backup record " + tag);
+                    }
+                }
+            });
+            if (!committed) return null;
+        } finally {
+            if (inflater != null) inflater.end();
+        }
+
+        Result result = new Result(sinceSeq, untilSeq, counts[0], counts[1], counts[2], counted.count,
+                SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, "restore " + result);
+        return result;
+    }
+
+    private static void writeHike(Writer w, Hike hike) throws IOException {
+        w.varint(TAG_HIKE);
+        w.varint(hike.getId());
+        w.string(hike.getName());
+        w.string(hike.getLocation());
+        w.string(hike.getDate());
+        w.varint(hike.isParking() ? 1 : 0);
+        w.decimal(hike.getLength());
+        w.string(hike.getDifficulty());
+        w.string(hike.getDescription());
+        w.string(hike.getWeather());
+        w.signed(hike.getGroupSize());
+    }
+
+    private static Hike readHike(Reader r) throws IOException {
+        Hike hike = new Hike();
+        hike.setId((int) r.varint());
+        hike.setName(r.string());
+        hike.setLocation(r.string());
+        hike.setDate(r.string());
+        hike.setParking(r.varint() != 0);
+        hike.setLength(r.decimal());
+        hike.setDifficulty(r.string());
+        hike.setDescription(r.string());
+        hike.setWeather(r.string());
+        hike.setGroupSize((int) r.signed());
+        return hike;
+    }
+
+    private static void writeObservation(Writer w, Observation obs) throws IOException {
+        w.varint(TAG_OBSERVATION);
+        w.varint(obs.getId());
+        w.varint(obs.getHikeId());
+        w.string(obs.getObservationText());
+        w.string(obs.getTime());
+        w.string(obs.getComments());
+    }
+
+    private static Observation readObservation(Reader r) throws IOException {
+        Observation obs = new Observation();
+        obs.setId((int) r.varint());
+        obs.setHikeId((int) r.varint());
+        obs.setObservationText(r.string());
+        obs.setTime(r.string());
+        obs.setComments(r.string());
+        return obs;
+    }
+
+    // ------------------ encoding ------------------
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("backup ends mid-record");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    // package-private for HikeBackupEncodingTest
+    static final class Writer {
+        final OutputStream out;
+        private final Map<String, Integer> shared = new HashMap<>();
+
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        void varint(long value) throws IOException {
+            writeVarLong(out, value);
+        }
+
+        // zigzag, so small negatives stay short
+        void signed(long value) throws IOException {
+            writeVarLong(out, (value << 1) ^ (value >> 63));
+        }
+
+        // lengths are almost always whole hundredths: send those as an even varint
+        void decimal(double value) throws IOException {
+            long hundredths = Math.round(value * 100);
+            if (hundredths >= 0 && hundredths < (1L << 53) && hundredths / 100.0 == value) {
+                writeVarLong(out, hundredths << 1);
+            } else {
+                writeVarLong(out, 1);
+                long bits = Double.doubleToRawLongBits(value);
+                for (int i = 0; i < 8; i++) out.write((int) (bits >>> (8 * i)));
+            }
+        }
+
+        void string(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(out, STR_NULL);
+                return;
+            }
+            Integer ref = shared.get(value);
+            if (ref != null) {
+                writeVarLong(out, STR_FIRST_REF + ref);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, STR_LITERAL);
+            writeVarLong(out, utf8.length);
+            out.write(utf8);
+            if (value.length() <= MAX_SHARED_CHARS && shared.size() < MAX_SHARED_STRINGS) {
+                shared.put(value, shared.size());
+            }
+        }
+    }
+
+    static final class Reader {
+        private final InputStream in;
+        // mirrors Writer.shared: same rule, same order
+        private final List<String> shared = new ArrayList<>();
+        private byte[] buffer = new byte[256];
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        long varint() throws IOException {
+            return readVarLong(in);
+        }
+
+        long signed() throws IOException {
+            long v = readVarLong(in);
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        double decimal() throws IOException {
+            long v = readVarLong(in);
+            if ((v & 1) == 0) return (v >>> 1) / 100.0;
+            long bits = 0;
+            for (int i = 0; i < 8; i++) bits |= (long) readByte() << (8 * i);
+            return Double.longBitsToDouble(bits);
+        }
+
+        String string() throws IOException {
+            long ref = readVarLong(in);
+            if (ref == STR_NULL) return null;
+            if (ref >= STR_FIRST_REF) {
+                long idx = ref - STR_FIRST_REF;
+                if (idx >= shared.size()) throw new IOException("bad string reference " + ref);
+                return shared.get((int) idx);
+            }
+            long length = readVarLong(in);
+            if (length > Integer.MAX_VALUE) throw new IOException("string too long");
+            int n = (int) length;
+            if (buffer.length < n) buffer = new byte[Math.max(n, buffer.length * 2)];
+            for (int off = 0; off < n; ) {
+                int read = in.read(buffer, off, n - off);
+                if (read < 0) throw new EOFException("backup ends mid-string");
+                off += read;
+            }
+            String value = new String(buffer, 0, n, StandardCharsets.UTF_8);
+            if (value.length() <= MAX_SHARED_CHARS && shared.size() < MAX_SHARED_STRINGS) shared.add(value);
+            return value;
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) throw new EOFException("backup ends mid-record");
+            return b;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.mhike.database;
+
+import android.util.LruCache;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide LRU cache in front of DatabaseHelper: single hikes by id and the
+ * observation list of each hike. DatabaseHelper writes through on every change.
+ * A read that raced with a write does not store its (possibly old) result: every
+ * invalidation bumps a generation that readers capture before they query.
+ * Models go in and come out as copies, so a caller editing the hike it was handed
+ * cannot change the cached row without a write.
+ */
+public class HikeCache {
+
+    private static final int MAX_HIKES = 512;
+    // measured in observations, so one huge log cannot push everything else out
+    private static final int MAX_OBSERVATIONS = 4000;
+
+    private final LruCache<Integer, Hike> hikes = new LruCache<>(MAX_HIKES);
+    private final LruCache<Integer, List<Observation>> observations =
+            new LruCache<Integer, List<Observation>>(MAX_OBSERVATIONS) {
+                @Override
+                protected int sizeOf(Integer hikeId, List<Observation> list) {
+                    return list.size() + 1;
+                }
+            };
+
+    private long generation;
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    Hike getHike(int hikeId) {
+        Hike cached = hikes.get(hikeId);
+        return cached == null ? null : new Hike(cached);
+    }
+
+    synchronized void putHike(Hike hike, long readGeneration) {
+        if (readGeneration == generation && hike != null) hikes.put(hike.getId(), new Hike(hike));
+    }
+
+    // write-through after an insert/update that has committed
+    synchronized void storeHike(Hike hike) {
+        generation++;
+        hikes.put(hike.getId(), new Hike(hike));
+    }
+
+    synchronized void removeHike(int hikeId) {
+        generation++;
+        hikes.remove(hikeId);
+        observations.remove(hikeId);
+    }
+
+    List<Observation> getObservations(int hikeId) {
+        List<Observation> cached = observations.get(hikeId);
+        // callers get their own list to sort/filter, and their own rows to edit
+        return cached == null ? null : copyOf(cached);
+    }
+
+    synchronized void putObservations(int hikeId, List<Observation> list, long readGeneration) {
+        if (readGeneration == generation) observations.put(hikeId, copyOf(list));
+    }
+
+    private static List<Observation> copyOf(List<Observation> list) {
+        List<Observation> copy = new ArrayList<>(list.size());
+        for (Observation obs : list) copy.add(new Observation(obs));
+        return copy;
+    }
+
+    synchronized void invalidateObservations(int hikeId) {
+        generation++;
+        observations.remove(hikeId);
+    }
+
+    synchronized void clear() {
+        generation++;
+        hikes.evictAll();
+        observations.evictAll();
+    }
+
+    public int hikeHitCount() {
+        return hikes.hitCount();
+    }
+
+    public int hikeMissCount() {
+        return hikes.missCount();
+    }
+
+    public int observationHitCount() {
+        return observations.hitCount();
+    }
+
+    public int observationMissCount() {
+        return observations.missCount();
+    }
+
+    @Override
+    public String toString() {
+        return "HikeCache{hikes " + hikes.size() + "/" + MAX_HIKES +
+                " hit=" + hikeHitCount() + " miss=" + hikeMissCount() +
+                ", observations " + observations.size() + "/" + MAX_OBSERVATIONS +
+                " hit=" + observationHitCount() + " miss=" + observationMissCount() + '}';
+    }
+}
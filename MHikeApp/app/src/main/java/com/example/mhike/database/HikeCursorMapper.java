@@ -0,0 +1,54 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+
+import com.example.mhike.models.Hike;
+
+/**
+ * Reads Hike rows by column index. Indices are looked up once when the mapper is
+ * created for a cursor; a missing column (-1) falls back to the same defaults the
+ * old per-row try/catch lookups used.
+ */
+final class HikeCursorMapper {
+
+    private final int idIdx;
+    private final int nameIdx;
+    private final int locationIdx;
+    private final int dateIdx;
+    private final int parkingIdx;
+    private final int distanceIdx;
+    private final int levelIdx;
+    private final int infoIdx;
+    private final int weatherIdx;
+    private final int teamIdx;
+
+    HikeCursorMapper(Cursor c) {
+        idIdx = c.getColumnIndex("id");
+        nameIdx = c.getColumnIndex("name");
+        locationIdx = c.getColumnIndex("location");
+        dateIdx = c.getColumnIndex("date");
+        // prefer parking_available (legacy), fallback to parking
+        int legacyParking = c.getColumnIndex("parking_available");
+        parkingIdx = legacyParking >= 0 ? legacyParking : c.getColumnIndex("parking");
+        distanceIdx = c.getColumnIndex("length");
+        levelIdx = c.getColumnIndex("difficulty");
+        infoIdx = c.getColumnIndex("description");
+        weatherIdx = c.getColumnIndex("weather");
+        teamIdx = c.getColumnIndex("group_size");
+    }
+
+    Hike map(Cursor c) {
+        Hike hikeData = new Hike();
+        hikeData.setId(idIdx >= 0 ? c.getInt(idIdx) : 0);
+        hikeData.setName(nameIdx >= 0 ? c.getString(nameIdx) : "");
+        hikeData.setLocation(locationIdx >= 0 ? c.getString(locationIdx) : "");
+        hikeData.setDate(dateIdx >= 0 ? c.getString(dateIdx) : "");
+        hikeData.setParking(parkingIdx >= 0 && c.getInt(parkingIdx) == 1);
+        hikeData.setLength(distanceIdx >= 0 ? c.getDouble(distanceIdx) : 0);
+        hikeData.setDifficulty(levelIdx >= 0 ? c.getString(levelIdx) : "Easy");
+        hikeData.setDescription(infoIdx >= 0 ? c.getString(infoIdx) : "");
+        hikeData.setWeather(weatherIdx >= 0 ? c.getString(weatherIdx) : "");
+        hikeData.setGroupSize(teamIdx >= 0 ? c.getInt(teamIdx) : 0);
+        return hikeData;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.mhike.models.Hike;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes every hike and observation to a stream as CSV (one line per observation,
+ * hike columns repeated) or JSON lines (one hike per line with its observations
+ * nested). Rows come from one forward-only join cursor and go straight to a
+ * buffered writer, so memory stays flat however large the logbook is.
+ * Runs on the calling thread; cancel() may be called from any thread.
+ */
+public class HikeExporter {
+
+    private static final String TAG = "HikeExporter";
+    private static final int BUFFER_CHARS = 64 * 1024;
+    private static final int PROGRESS_EVERY_ROWS = 1000;
+
+    private static final String CSV_HEADER = "hike_id,name,location,date,parking,length,difficulty," +
+            "description,weather,group_size,observation_id,observation,time,comments";
+
+    public enum Format { CSV, JSON_LINES }
+
+    public interface ProgressListener {
+        // called on the exporting thread every PROGRESS_EVERY_ROWS rows
+        void onProgress(long rows);
+    }
+
+    public static class Result {
+        private final long hikes;
+        private final long observations;
+        private final long characters;
+        private final long millis;
+        private final boolean cancelled;
+
+        Result(long hikes, long observations, long characters, long millis, boolean cancelled) {
+            this.hikes = hikes;
+            this.observations = observations;
+            this.characters = characters;
+            this.millis = millis;
+            this.cancelled = cancelled;
+        }
+
+        public long getHikes() {
+            return hikes;
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public long getCharacters() {
+            return characters;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        // true if cancel() stopped the export early; the output holds whole records only
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public long rowsPerSecond() {
+            return (hikes + observations) * 1000 / Math.max(1, millis);
+        }
+
+        @Override
+        public String toString() {
+            return hikes + " hikes, " + observations + " observations, " + characters + " chars in " +
+                    millis + " ms (" + rowsPerSecond() + " rows/s)" + (cancelled ? ", cancelled" : "");
+        }
+    }
+
+    private volatile boolean cancelled;
+
+    // reused for every line
+    private final StringBuilder line = new StringBuilder(512);
+    private long characters;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Streams everything to out, which is flushed but left open.
+     * Returns null if reading or writing failed.
+     */
+    public Result export(DatabaseHelper dbHelper, OutputStream out, Format format, ProgressListener listener) {
+        long start = SystemClock.elapsedRealtime();
+        long hikes = 0;
+        long observations = 0;
+        long rows = 0;
+        characters = 0;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+        Cursor c = null;
+        try {
+            // one read transaction, so window refills re-run the query on the same rows
+            dbHelper.beginSnapshot();
+            c = dbHelper.openExportCursor();
+            HikeCursorMapper mapper = new HikeCursorMapper(c);
+            int idIdx = c.getColumnIndexOrThrow("id");
+            int obsIdIdx = c.getColumnIndexOrThrow("obs_id");
+            int obsTextIdx = c.getColumnIndexOrThrow("obs_text");
+            int obsTimeIdx = c.getColumnIndexOrThrow("obs_time");
+            int obsCommentsIdx = c.getColumnIndexOrThrow("obs_comments");
+
+            if (format == Format.CSV) {
+                line.append(CSV_HEADER);
+                endLine(writer);
+            }
+
+            Hike hike = null;
+            boolean firstObs = true;
+            while (!cancelled && c.moveToNext()) {
+                if (hike == null || c.getInt(idIdx) != hike.getId()) {
+                    if (hike != null && format == Format.JSON_LINES) {
+                        line.append("]}");
+                        endLine(writer);
+                    }
+                    hike = mapper.map(c);
+                    hikes++;
+                    firstObs = true;
+                    if (format == Format.JSON_LINES) startJsonHike(hike);
+                }
+
+                boolean hasObs = !c.isNull(obsIdIdx);
+                if (format == Format.CSV) {
+                    appendCsvHike(hike);
+                    if (hasObs) {
+                        line.append(c.getInt(obsIdIdx)).append(',');
+                        csv(c.getString(obsTextIdx)).append(',');
+                        csv(c.getString(obsTimeIdx)).append(',');
+                        csv(c.getString(obsCommentsIdx));
+                    } else {
+                        line.append(",,,");
+                    }
+                    endLine(writer);
+                } else if (hasObs) {
+                    if (!firstObs) line.append(',');
+                    line.append("{\"id\":").append(c.getInt(obsIdIdx));
+                    line.append(",\"observation\":");
+                    json(c.getString(obsTextIdx));
+                    line.append(",\"time\":");
+                    json(c.getString(obsTimeIdx));
+                    line.append(",\"comments\":");
+                    json(c.getString(obsCommentsIdx));
+                    line.append('}');
+                    firstObs = false;
+                }
+
+                if (hasObs) observations++;
+                rows++;
+                if (listener != null && rows % PROGRESS_EVERY_ROWS == 0) listener.onProgress(rows);
+            }
+
+            // a cancelled export still ends on a complete record
+            if (hike != null && format == Format.JSON_LINES) {
+                line.append("]}");
+                endLine(writer);
+            }
+            writer.flush();
+        } catch (Exception e) {
+            Log.e(TAG, "export error", e);
+            return null;
+        } finally {
+            if (c != null) c.close();
+            dbHelper.endSnapshot();
+        }
+
+        Result result = new Result(hikes, observations, characters,
+                SystemClock.elapsedRealtime() - start, cancelled);
+        Log.i(TAG, "exported " + format + ": " + result);
+        return result;
+    }
+
+    private void endLine(Writer writer) throws IOException {
+        line.append('\n');
+        writer.append(line);
+        characters += line.length();
+        line.setLength(0);
+    }
+
+    private void appendCsvHike(Hike hike) {
+        line.append(hike.getId()).append(',');
+        csv(hike.getName()).append(',');
+        csv(hike.getLocation()).append(',');
+        csv(hike.getDate()).append(',');
+        line.append(hike.isParking() ? "Yes" : "No").append(',');
+        line.append(hike.getLength()).append(',');
+        csv(hike.getDifficulty()).append(',');
+        csv(hike.getDescription()).append(',');
+        csv(hike.getWeather()).append(',');
+        line.append(hike.getGroupSize()).append(',');
+    }
+
+    private void startJsonHike(Hike hike) {
+        line.append("{\"id\":").append(hike.getId());
+        line.append(",\"name\":");
+        json(hike.getName());
+        line.append(",\"location\":");
+        json(hike.getLocation());
+        line.append(",\"date\":");
+        json(hike.getDate());
+        line.append(",\"parking\":").append(hike.isParking());
+        line.append(",\"length\":").append(hike.getLength());
+        line.append(",\"difficulty\":");
+        json(hike.getDifficulty());
+        line.append(",\"description\":");
+        json(hike.getDescription());
+        line.append(",\"weather\":");
+        json(hike.getWeather());
+        line.append(",\"group_size\":").append(hike.getGroupSize());
+        line.append(",\"observations\":[");
+    }
+
+    // RFC 4180: quote when needed, double any quote inside
+    private StringBuilder csv(String value) {
+        if (value == null) return line;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) return line.append(value);
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') line.append('"');
+            line.append(ch);
+        }
+        return line.append('"');
+    }
+
+    private void json(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) line.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+                    else line.append(ch);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.mhike.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.mhike.models.Hike;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * FTS4 shadow index over hikes(name, location, description, weather).
+ * The platform SQLite ships FTS4 but not FTS5, so bm25 is computed here from
+ * matchinfo('pcnalx') instead of inside the query.
+ */
+final class HikeFullText {
+
+    static final String FTS_TABLE = "hikes_fts";
+
+    // indexed columns, in FTS column order
+    private static final String[] COLUMNS = {"name", "location", "description", "weather"};
+    // a hit in the name counts more than one in the description
+    private static final double[] WEIGHTS = {4.0, 2.0, 1.0, 0.5};
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    static final String MATCH_INFO_FORMAT = "pcnalx";
+    static final String SNIPPET_SQL = "snippet(" + FTS_TABLE + ", '<b>', '</b>', '…', -1, 12)";
+
+    private HikeFullText() {
+    }
+
+    static final class Scored {
+        final int hikeId;
+        final double score;
+
+        Scored(int hikeId, double score) {
+            this.hikeId = hikeId;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Creates the external-content FTS table, the triggers that keep it in step with
+     * hikes, and indexes the rows already there. Safe to run on an existing index.
+     */
+    static void create(SQLiteDatabase db, String hikesTable) {
+        String cols = join("", ", ");
+        String newCols = join("new.", ", ");
+
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE +
+                " USING fts4(content=\"" + hikesTable + "\", " + cols + ")");
+
+        // external content: old values must leave the index before the row changes
+        createUpdateTriggers(db, hikesTable);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_bd BEFORE DELETE ON " + hikesTable +
+                " BEGIN DELETE FROM " + FTS_TABLE + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_ai AFTER INSERT ON " + hikesTable +
+                " BEGIN INSERT INTO " + FTS_TABLE + "(docid, " + cols + ") VALUES (new.id, " + newCols + "); END");
+
+        db.execSQL("INSERT INTO " + FTS_TABLE + "(" + FTS_TABLE + ") VALUES('rebuild')");
+    }
+
+    /** Replaces update triggers that fired on any column (before v12) with the current ones. */
+    static void recreateUpdateTriggers(SQLiteDatabase db, String hikesTable) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + FTS_TABLE + "_bu");
+        db.execSQL("DROP TRIGGER IF EXISTS " + FTS_TABLE + "_au");
+        createUpdateTriggers(db, hikesTable);
+    }
+
+    // only edits to indexed columns reindex, so tombstoning a hike does not touch the index
+    private static void createUpdateTriggers(SQLiteDatabase db, String hikesTable) {
+        String ofCols = " OF " + join("", ", ");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_bu BEFORE UPDATE" + ofCols + " ON " + hikesTable +
+                " BEGIN DELETE FROM " + FTS_TABLE + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_au AFTER UPDATE" + ofCols + " ON " + hikesTable +
+                " BEGIN INSERT INTO " + FTS_TABLE + "(docid, " + join("", ", ") + ") VALUES (new.id, " +
+                join("new.", ", ") + "); END");
+    }
+
+    private static String join(String prefix, String sep) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sb.append(sep);
+            sb.append(prefix).append(COLUMNS[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Turns free text into an FTS prefix query: every word must match the start of
+     * some token ("lake dist" -> "lake* dist*"). Returns null when nothing is left.
+     */
+    static String toMatchQuery(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (String token : tokens(text)) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token).append('*');
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /** Lower-cased words of the text, split the same way the query is built. */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /** True when every query token starts some word of the hike's indexed columns, as MATCH would. */
+    static boolean matches(Hike hike, List<String> queryTokens) {
+        List<String> words = new ArrayList<>();
+        words.addAll(tokens(hike.getName()));
+        words.addAll(tokens(hike.getLocation()));
+        words.addAll(tokens(hike.getDescription()));
+        words.addAll(tokens(hike.getWeather()));
+        for (String token : queryTokens) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(token)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /** Okapi BM25 over the weighted columns, from a matchinfo('pcnalx') blob. */
+    static double bm25(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        long rows = info.get(2) & 0xffffffffL;
+        int avgOffset = 3;
+        int lenOffset = avgOffset + columns;
+        int hitsOffset = lenOffset + columns;
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns && c < WEIGHTS.length; c++) {
+                int x = hitsOffset + 3 * (p * columns + c);
+                int hitsInRow = info.get(x);
+                if (hitsInRow == 0) continue;
+                int docsWithHit = info.get(x + 2);
+
+                double idf = Math.log((rows - docsWithHit + 0.5) / (docsWithHit + 0.5));
+                if (idf < 1e-6) idf = 1e-6; // very common terms still count a little
+                double avgLen = Math.max(1, info.get(avgOffset + c));
+                double len = info.get(lenOffset + c);
+                double tf = hitsInRow * (K1 + 1) / (hitsInRow + K1 * (1 - B + B * len / avgLen));
+                score += WEIGHTS[c] * idf * tf;
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,455 @@
+package com.example.mhike.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeValidator;
+import com.example.mhike.models.Observation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads hikes (with their observations) from the files HikeExporter writes, or any
+ * CSV with the same header names, and stores them through DatabaseHelper's batched
+ * inserts. Records are parsed one at a time and written in chunks, so only a chunk
+ * and the (name, location, date) keys seen so far are held in memory.
+ * Each hike is checked with the add-hike form rules; invalid records and
+ * duplicates of stored or earlier hikes are skipped and counted.
+ * Runs on the calling thread; given a HikeRepository, each chunk is written as its own
+ * write task instead. cancel() may be called from any thread.
+ */
+public class HikeImporter {
+
+    private static final String TAG = "HikeImporter";
+    private static final int BUFFER_CHARS = 64 * 1024;
+    // hikes committed per transaction, together with their observations
+    private static final int CHUNK_HIKES = 2000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    public static class Result {
+        private final boolean dryRun;
+        private final boolean cancelled;
+        private final long records;
+        private final long hikes;
+        private final long observations;
+        private final long duplicates;
+        private final long invalid;
+        private final long millis;
+        private final List<String> errors;
+
+        Result(boolean dryRun, boolean cancelled, long records, long hikes, long observations,
+               long duplicates, long invalid, long millis, List<String> errors) {
+            this.dryRun = dryRun;
+            this.cancelled = cancelled;
+            this.records = records;
+            this.hikes = hikes;
+            this.observations = observations;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+            this.millis = millis;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // hike records read, valid or not
+        public long getRecords() {
+            return records;
+        }
+
+        // stored, or that would have been stored in a dry run
+        public long getHikes() {
+            return hikes;
+        }
+
+        public long getObservations() {
+            return observations;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        // the first few problems, as "line N: message"
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public long recordsPerSecond() {
+            return records * 1000 / Math.max(1, millis);
+        }
+
+        @Override
+        public String toString() {
+            return (dryRun ? "dry run: " : "") + records + " records, " + hikes + " hikes, " +
+                    observations + " observations, " + duplicates + " duplicates, " + invalid +
+                    " invalid in " + millis + " ms (" + recordsPerSecond() + " records/s)" +
+                    (cancelled ? ", cancelled" : "");
+        }
+    }
+
+    /** One hike and its observations as read from the file, before validation. */
+    private static final class Record {
+        final int line;
+        String name, location, date, parking, length, difficulty, description, weather, groupSize;
+        final List<String[]> observations = new ArrayList<>(); // {text, time, comments}
+
+        Record(int line) {
+            this.line = line;
+        }
+    }
+
+    private volatile boolean cancelled;
+
+    private DatabaseHelper dbHelper;
+    // null: chunks are written on the calling thread
+    private HikeRepository repository;
+    private boolean dryRun;
+    private Set<String> seenKeys;
+    private final List<Hike> chunk = new ArrayList<>();
+    private final List<List<Observation>> chunkObservations = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private long records, hikes, observations, duplicates, invalid;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Reads the whole stream, which is left open. With dryRun nothing is written but the
+     * counts are the same as a real import would give. Returns null if reading failed.
+     */
+    public Result importFrom(DatabaseHelper dbHelper, InputStream in, HikeExporter.Format format, boolean dryRun) {
+        return importFrom(dbHelper, null, in, format, dryRun);
+    }
+
+    /**
+     * Like importFrom(dbHelper, ...), but every chunk is written through
+     * repository.awaitWrite, so saves and deletes run between chunks rather than after
+     * the whole file. dbHelper is only read here. Must not be called on the writer thread.
+     */
+    public Result importFrom(DatabaseHelper dbHelper, HikeRepository repository, InputStream in,
+                             HikeExporter.Format format, boolean dryRun) {
+        long start = SystemClock.elapsedRealtime();
+        this.dbHelper = dbHelper;
+        this.repository = repository;
+        this.dryRun = dryRun;
+        seenKeys = dbHelper.loadDuplicateKeys();
+        chunk.clear();
+        chunkObservations.clear();
+        errors.clear();
+        records = hikes = observations = duplicates = invalid = 0;
+
+        try {
+            Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_CHARS);
+            if (format == HikeExporter.Format.CSV) {
+                readCsv(reader);
+            } else {
+                readJsonLines(new BufferedReader(reader));
+            }
+            flushChunk();
+        } catch (Exception e) {
+            Log.e(TAG, "import error", e);
+            return null;
+        }
+
+        Result result = new Result(dryRun, cancelled, records, hikes, observations, duplicates, invalid,
+                SystemClock.elapsedRealtime() - start, new ArrayList<>(errors));
+        Log.i(TAG, "imported " + format + ": " + result);
+        return result;
+    }
+
+    // ------------------ CSV ------------------
+
+    private void readCsv(Reader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) return;
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            // a UTF-8 BOM ends up stuck to the first name
+            columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+        }
+
+        Record current = null;
+        String currentGroup = null;
+        List<String> row;
+        while (!cancelled && (row = csv.next()) != null) {
+            if (row.size() == 1 && row.get(0).trim().isEmpty()) continue; // blank line
+
+            // rows of one hike are consecutive: exported files carry hike_id, others repeat the fields
+            String group = field(row, columns, "hike_id");
+            if (group == null || group.isEmpty()) {
+                group = DatabaseHelper.duplicateKey(field(row, columns, "name"),
+                        field(row, columns, "location"), field(row, columns, "date"));
+            }
+            if (current == null || !group.equals(currentGroup)) {
+                if (current != null) accept(current);
+                current = new Record(csv.recordLine());
+                currentGroup = group;
+                current.name = field(row, columns, "name");
+                current.location = field(row, columns, "location");
+                current.date = field(row, columns, "date");
+                current.parking = field(row, columns, "parking");
+                current.length = field(row, columns, "length");
+                current.difficulty = field(row, columns, "difficulty");
+                current.description = field(row, columns, "description");
+                current.weather = field(row, columns, "weather");
+                current.groupSize = field(row, columns, "group_size");
+            }
+
+            String text = field(row, columns, "observation");
+            String time = field(row, columns, "time");
+            String comments = field(row, columns, "comments");
+            if (!isBlank(text) || !isBlank(time) || !isBlank(comments)) {
+                current.observations.add(new String[]{text, time, comments});
+            }
+        }
+        if (current != null && !cancelled) accept(current);
+    }
+
+    private static String field(List<String> row, Map<String, Integer> columns, String name) {
+        Integer idx = columns.get(name);
+        return idx != null && idx < row.size() ? row.get(idx) : null;
+    }
+
+    /** RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks. */
+    private static final class CsvReader {
+        private final Reader in;
+        private int line = 1;
+        private int recordLine;
+        private int peeked = -2;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        // line the last record started on
+        int recordLine() {
+            return recordLine;
+        }
+
+        List<String> next() throws IOException {
+            int ch = read();
+            if (ch == -1) return null;
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (ch == -1) break; // unterminated quote: keep what we have
+                    if (ch == '"') {
+                        int after = read();
+                        if (after == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            ch = after;
+                            continue;
+                        }
+                    } else {
+                        if (ch == '\n') line++;
+                        field.append((char) ch);
+                    }
+                } else if (ch == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n' || ch == -1) {
+                    if (ch == '\n') line++;
+                    break;
+                } else if (ch == '\r') {
+                    int after = read();
+                    if (after != '\n') unread(after);
+                    line++;
+                    break;
+                } else {
+                    field.append((char) ch);
+                }
+                ch = read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int ch = peeked;
+                peeked = -2;
+                return ch;
+            }
+            return in.read();
+        }
+
+        private void unread(int ch) {
+            peeked = ch;
+        }
+    }
+
+    // ------------------ JSON lines ------------------
+
+    private void readJsonLines(BufferedReader reader) throws IOException {
+        String text;
+        int line = 0;
+        while (!cancelled && (text = reader.readLine()) != null) {
+            line++;
+            if (line == 1) text = text.replace("\uFEFF", "");
+            if (text.trim().isEmpty()) continue;
+            Record record = new Record(line);
+            try {
+                JSONObject obj = new JSONObject(text);
+                record.name = string(obj, "name");
+                record.location = string(obj, "location");
+                record.date = string(obj, "date");
+                record.parking = string(obj, "parking");
+                record.length = string(obj, "length");
+                record.difficulty = string(obj, "difficulty");
+                record.description = string(obj, "description");
+                record.weather = string(obj, "weather");
+                record.groupSize = string(obj, "group_size");
+                JSONArray list = obj.optJSONArray("observations");
+                for (int i = 0; list != null && i < list.length(); i++) {
+                    JSONObject o = list.getJSONObject(i);
+                    record.observations.add(new String[]{string(o, "observation"), string(o, "time"), string(o, "comments")});
+                }
+            } catch (JSONException e) {
+                records++;
+                reject(record, "not a valid JSON record");
+                continue;
+            }
+            accept(record);
+        }
+    }
+
+    private static String string(JSONObject obj, String key) {
+        return obj.isNull(key) ? null : String.valueOf(obj.opt(key));
+    }
+
+    // ------------------ validation and writes ------------------
+
+    private void accept(Record record) {
+        records++;
+
+        String error = firstNonNull(
+                HikeValidator.checkName(record.name),
+                HikeValidator.checkLocation(record.location),
+                HikeValidator.checkDate(record.date),
+                HikeValidator.checkLength(record.length));
+        Boolean parking = HikeValidator.parseParking(record.parking);
+        String difficulty = HikeValidator.parseDifficulty(record.difficulty);
+        if (error == null && parking == null) error = "Parking must be Yes or No";
+        if (error == null && difficulty == null) error = "Difficulty must be Easy, Medium or Hard";
+        for (int i = 0; error == null && i < record.observations.size(); i++) {
+            error = HikeValidator.checkObservationText(record.observations.get(i)[0]);
+        }
+        if (error != null) {
+            reject(record, error);
+            return;
+        }
+
+        if (!seenKeys.add(DatabaseHelper.duplicateKey(record.name, record.location, record.date))) {
+            duplicates++;
+            return;
+        }
+
+        Hike hike = new Hike();
+        hike.setName(record.name.trim());
+        hike.setLocation(record.location.trim());
+        hike.setDate(record.date.trim());
+        hike.setParking(parking);
+        hike.setLength(Double.parseDouble(record.length.trim()));
+        hike.setDifficulty(difficulty);
+        hike.setDescription(record.description != null ? record.description.trim() : "");
+        hike.setWeather(record.weather != null ? record.weather.trim() : "");
+        hike.setGroupSize(HikeValidator.parseGroupSize(record.groupSize));
+
+        List<Observation> obsList = new ArrayList<>(record.observations.size());
+        for (String[] o : record.observations) {
+            obsList.add(new Observation(0, o[0].trim(), o[1] != null ? o[1].trim() : "", o[2] != null ? o[2].trim() : ""));
+        }
+
+        chunk.add(hike);
+        chunkObservations.add(obsList);
+        if (chunk.size() >= CHUNK_HIKES) flushChunk();
+    }
+
+    private void reject(Record record, String message) {
+        invalid++;
+        if (errors.size() < MAX_REPORTED_ERRORS) errors.add("line " + record.line + ": " + message);
+    }
+
+    private void flushChunk() {
+        if (chunk.isEmpty()) return;
+        int committed = chunk.size();
+        if (!dryRun) committed = writeChunk();
+
+        // a hike and its observations commit or roll back together
+        for (int i = 0; i < chunk.size(); i++) {
+            if (dryRun || chunk.get(i).getId() > 0) observations += chunkObservations.get(i).size();
+        }
+        hikes += committed;
+        if (committed < chunk.size()) {
+            invalid += chunk.size() - committed;
+            if (errors.size() < MAX_REPORTED_ERRORS) errors.add((chunk.size() - committed) + " hikes could not be written");
+        }
+
+        chunk.clear();
+        chunkObservations.clear();
+    }
+
+    private int writeChunk() {
+        if (repository == null) return dbHelper.addHikesWithObservations(chunk, chunkObservations, CHUNK_HIKES);
+        try {
+            Integer committed = repository.awaitWrite(db -> db.addHikesWithObservations(chunk, chunkObservations, CHUNK_HIKES));
+            return committed != null ? committed : 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+            return 0;
+        }
+    }
+
+    private static String firstNonNull(String... values) {
+        for (String value : values) {
+            if (value != null) return value;
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.mhike.database;
+
+import com.example.mhike.models.Hike;
+
+import java.util.List;
+
+/**
+ * One page of the hike list plus the keyset (date_epoch_day, id) of its last row,
+ * which is passed back to {@link DatabaseHelper#loadHikesPage} to get the next page.
+ */
+public class HikePage {
+    private final List<Hike> hikes;
+    private final Long lastDate;
+    private final int lastId;
+    private final boolean hasMore;
+
+    HikePage(List<Hike> hikes, Long lastDate, int lastId, boolean hasMore) {
+        this.hikes = hikes;
+        this.lastDate = lastDate;
+        this.lastId = lastId;
+        this.hasMore = hasMore;
+    }
+
+    public List<Hike> getHikes() {
+        return hikes;
+    }
+
+    // epoch day of the last row, null when it has no parseable date
+    public Long getLastDate() {
+        return lastDate;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
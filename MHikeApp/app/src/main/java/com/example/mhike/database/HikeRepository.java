@@ -0,0 +1,255 @@
+package com.example.mhike.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DatabaseHelper calls off the main thread. Writes go through one thread, so
+ * they apply in the order they were issued; reads share a small pool that works
+ * alongside the writer because the database is in WAL mode.
+ * Results come back on the main looper. When the owner is destroyed, pending
+ * callbacks are dropped and queued reads are cancelled. Writes always finish.
+ */
+public class HikeRepository {
+
+    private static final String TAG = "HikeRepository";
+    private static final int READER_THREADS = 3;
+    // tombstoned hikes removed per write task by purgeDeleted
+    private static final int PURGE_CHUNK_HIKES = 200;
+
+    public interface Query<T> {
+        T run(DatabaseHelper db);
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface ChangeFilter {
+        boolean affects(DbChange change);
+    }
+
+    private static volatile HikeRepository instance;
+
+    public static HikeRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (HikeRepository.class) {
+                if (instance == null) {
+                    instance = new HikeRepository(DatabaseHelper.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(dbThreads("mhike-db-write"));
+    private final ExecutorService readers = Executors.newFixedThreadPool(READER_THREADS, dbThreads("mhike-db-read"));
+    // slow work (sync round trips, file imports) that reaches the database through
+    // awaitWrite, never the writer itself
+    private final ExecutorService network = Executors.newSingleThreadExecutor(dbThreads("mhike-net"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // tests run one over their own DatabaseHelper
+    @VisibleForTesting
+    HikeRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    public <T> Task read(LifecycleOwner owner, Query<T> query, Callback<T> callback) {
+        return submit(readers, true, owner, query, callback);
+    }
+
+    public <T> Task write(LifecycleOwner owner, Query<T> query, Callback<T> callback) {
+        return submit(writer, false, owner, query, callback);
+    }
+
+    /**
+     * Runs sync on its own thread. Only its short database steps go through the writer,
+     * one task per batch, so saves and deletes are not queued behind HTTP round trips.
+     */
+    public Task sync(LifecycleOwner owner, HikeSync sync, SyncTransport transport, Callback<HikeSync.Result> callback) {
+        return submit(network, false, owner, db -> sync.sync(this, transport), callback);
+    }
+
+    /**
+     * Runs query on the same background thread as sync, for long jobs that write in
+     * short steps through awaitWrite (a large import, one task per chunk) so the writer
+     * is free between them. The query may read through the helper it is given.
+     */
+    public <T> Task writeInSteps(LifecycleOwner owner, Query<T> query, Callback<T> callback) {
+        return submit(network, false, owner, query, callback);
+    }
+
+    /**
+     * Runs query as a write task and waits for its result; null if it threw.
+     * For code already off the main thread, and never on the writer thread itself.
+     */
+    <T> T awaitWrite(Query<T> query) throws InterruptedException {
+        try {
+            return writer.submit(() -> query.run(dbHelper)).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "db task failed", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Physically removes hikes tombstoned at or before deletedBefore, and their
+     * observations, PURGE_CHUNK_HIKES at a time. Each chunk is its own write task and
+     * transaction, so writes queued meanwhile run between chunks instead of after the purge.
+     */
+    public void purgeDeleted(long deletedBefore) {
+        writer.execute(() -> purgeChunk(deletedBefore, 0));
+    }
+
+    private void purgeChunk(long deletedBefore, int purgedSoFar) {
+        int purged = dbHelper.purgeDeletedHikes(deletedBefore, PURGE_CHUNK_HIKES);
+        if (purged == PURGE_CHUNK_HIKES) {
+            writer.execute(() -> purgeChunk(deletedBefore, purgedSoFar + purged));
+        } else if (purgedSoFar + Math.max(purged, 0) > 0) {
+            // the purge freed pages; give the -wal file back as well
+            dbHelper.checkpoint(true);
+            Log.i(TAG, "purged " + (purgedSoFar + Math.max(purged, 0)) + " deleted hikes");
+        }
+    }
+
+    /**
+     * Delivers every committed change on the main thread until the owner is destroyed.
+     * Must be called on the main thread.
+     */
+    public void observe(LifecycleOwner owner, DatabaseHelper.ChangeListener listener) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) return;
+
+        DatabaseHelper.ChangeListener relay = change -> mainHandler.post(() -> {
+            if (lifecycle.getCurrentState() != Lifecycle.State.DESTROYED) listener.onChange(change);
+        });
+        dbHelper.addChangeListener(relay);
+        lifecycle.addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    dbHelper.removeChangeListener(relay);
+                    lifecycle.removeObserver(this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the query now and again after every change the filter accepts, so the
+     * screen re-reads only when its rows may have changed. A re-run replaces any
+     * result still pending from the previous one.
+     */
+    public <T> void observeQuery(LifecycleOwner owner, ChangeFilter filter, Query<T> query, Callback<T> callback) {
+        Task[] pending = new Task[1];
+        Runnable rerun = () -> {
+            if (pending[0] != null) pending[0].cancel();
+            pending[0] = read(owner, query, callback);
+        };
+        observe(owner, change -> {
+            if (filter.affects(change)) rerun.run();
+        });
+        rerun.run();
+    }
+
+    private <T> Task submit(ExecutorService executor, boolean cancellable, LifecycleOwner owner,
+                            Query<T> query, Callback<T> callback) {
+        Task task = new Task(cancellable);
+        task.future = executor.submit(() -> {
+            if (task.isCancelled()) return;
+            T result;
+            try {
+                result = query.run(dbHelper);
+            } catch (Exception e) {
+                // DatabaseHelper logs and swallows its own errors; this is a last resort
+                Log.e(TAG, "db task failed", e);
+                result = null;
+            }
+            T delivered = result;
+            mainHandler.post(() -> {
+                task.detach();
+                if (!task.isCancelled() && callback != null) callback.onResult(delivered);
+            });
+        });
+        if (owner != null) task.attach(owner);
+        return task;
+    }
+
+    /** Handle to one submitted call; cancel() drops its callback. */
+    public static class Task {
+        private final boolean interruptible;
+        private volatile boolean cancelled;
+        private Future<?> future;
+        private Lifecycle lifecycle;
+        private LifecycleEventObserver observer;
+
+        Task(boolean interruptible) {
+            this.interruptible = interruptible;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            // a write that has been queued still has to reach the database
+            if (interruptible && future != null) future.cancel(false);
+            detach();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // must be called on the main thread, like every Lifecycle call
+        private void attach(LifecycleOwner owner) {
+            lifecycle = owner.getLifecycle();
+            if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                cancel();
+                return;
+            }
+            observer = (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) cancel();
+            };
+            lifecycle.addObserver(observer);
+        }
+
+        private void detach() {
+            if (lifecycle != null && observer != null) {
+                lifecycle.removeObserver(observer);
+            }
+            lifecycle = null;
+            observer = null;
+        }
+    }
+
+    private static ThreadFactory dbThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread t = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }, prefix + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.mhike.database;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Filters for {@link DatabaseHelper#advancedSearch(HikeSearchCriteria)}.
+ * Every field is optional; null (or an empty set) means "do not filter on it".
+ * Ranges are inclusive.
+ */
+public class HikeSearchCriteria {
+    private String name;
+    private String location;
+    private Double minDistance;
+    private Double maxDistance;
+    private final Set<String> difficulties = new LinkedHashSet<>();
+    private Boolean parking;
+    private Integer minGroupSize;
+    private Integer maxGroupSize;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private String dateText;
+
+    public String getName() {
+        return name;
+    }
+
+    // substring match
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    // substring match
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public Double getMinDistance() {
+        return minDistance;
+    }
+
+    public Double getMaxDistance() {
+        return maxDistance;
+    }
+
+    public void setDistanceRange(Double minDistance, Double maxDistance) {
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+    }
+
+    public Set<String> getDifficulties() {
+        return difficulties;
+    }
+
+    public void addDifficulty(String difficulty) {
+        if (difficulty != null && !difficulty.isEmpty()) difficulties.add(difficulty);
+    }
+
+    public Boolean getParking() {
+        return parking;
+    }
+
+    public void setParking(Boolean parking) {
+        this.parking = parking;
+    }
+
+    public Integer getMinGroupSize() {
+        return minGroupSize;
+    }
+
+    public Integer getMaxGroupSize() {
+        return maxGroupSize;
+    }
+
+    public void setGroupSizeRange(Integer minGroupSize, Integer maxGroupSize) {
+        this.minGroupSize = minGroupSize;
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public void setDateRange(LocalDate fromDate, LocalDate toDate) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    public String getDateText() {
+        return dateText;
+    }
+
+    // partial date such as "05/2024", matched against the stored text
+    public void setDateText(String dateText) {
+        this.dateText = dateText;
+    }
+
+    public boolean isEmpty() {
+        return isBlank(name) && isBlank(location) && minDistance == null && maxDistance == null
+                && difficulties.isEmpty() && parking == null && minGroupSize == null
+                && maxGroupSize == null && fromDate == null && toDate == null && isBlank(dateText);
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isEmpty();
+    }
+}
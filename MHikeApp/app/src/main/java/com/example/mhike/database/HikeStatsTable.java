@@ -0,0 +1,166 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * hike_stats: hike count, distance and observation count per month, difficulty and
+ * location (plus one 'total' row), kept current by triggers on hikes and observations
+ * so the stats screen reads one row per group instead of scanning every hike.
+ * Tombstoned hikes (deleted_at set) and their observations are not counted.
+ * Uses the current column names (difficulty, length, date_epoch_day, deleted_at, hike_id).
+ */
+final class HikeStatsTable {
+
+    static final String TABLE = "hike_stats";
+
+    static final String DIM_TOTAL = "total";
+    static final String DIM_MONTH = "month";
+    static final String DIM_DIFFICULTY = "difficulty";
+    static final String DIM_LOCATION = "location";
+
+    private static final String[] DIMENSIONS = {DIM_MONTH, DIM_DIFFICULTY, DIM_LOCATION};
+
+    // distances are summed as REAL in triggers, so compare them rounded
+    private static final int DISTANCE_DECIMALS = 3;
+
+    private static final String[] TRIGGERS = {"_hike_ai", "_hike_bd", "_hike_ad", "_hike_au", "_obs_ai", "_obs_ad", "_obs_au"};
+
+    private HikeStatsTable() {
+    }
+
+    /** Drops the triggers so create() can install the current ones; the table stays. */
+    static void dropTriggers(SQLiteDatabase db) {
+        for (String trigger : TRIGGERS) db.execSQL("DROP TRIGGER IF EXISTS " + TABLE + trigger);
+    }
+
+    /** Creates the table and its triggers, then fills it from the current rows. */
+    static void create(SQLiteDatabase db, String hikesTable, String obsTable) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE + "(" +
+                "dimension TEXT NOT NULL," +
+                "key TEXT NOT NULL," +
+                "hikes INTEGER NOT NULL DEFAULT 0," +
+                "distance REAL NOT NULL DEFAULT 0," +
+                "observations INTEGER NOT NULL DEFAULT 0," +
+                "PRIMARY KEY(dimension, key)) WITHOUT ROWID");
+
+        String obsCount = "(SELECT COUNT(*) FROM " + obsTable + " WHERE hike_id = %s.id)";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_hike_ai AFTER INSERT ON " + hikesTable +
+                " BEGIN " + bumpHike("new", "1", "0") + " END");
+
+        // observations go first, while the hike row is still there for their triggers to read
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_hike_bd BEFORE DELETE ON " + hikesTable +
+                " BEGIN DELETE FROM " + obsTable + " WHERE hike_id = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_hike_ad AFTER DELETE ON " + hikesTable +
+                " BEGIN " + bumpHike("old", "-1", "0") + dropEmpty() + " END");
+
+        // also fires when deleted_at is set or cleared, moving the hike out of or back into the counts
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_hike_au AFTER UPDATE ON " + hikesTable +
+                " BEGIN " +
+                bumpHike("old", "-1", "-" + String.format(obsCount, "old")) +
+                bumpHike("new", "1", String.format(obsCount, "new")) +
+                dropEmpty() + " END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_obs_ai AFTER INSERT ON " + obsTable +
+                " BEGIN " + bumpObservation(hikesTable, "new", "1") + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_obs_ad AFTER DELETE ON " + obsTable +
+                " BEGIN " + bumpObservation(hikesTable, "old", "-1") + dropEmpty() + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TABLE + "_obs_au AFTER UPDATE OF hike_id ON " + obsTable +
+                " BEGIN " + bumpObservation(hikesTable, "old", "-1") + bumpObservation(hikesTable, "new", "1") +
+                dropEmpty() + " END");
+
+        rebuild(db, hikesTable, obsTable);
+    }
+
+    /** Recomputes every row from hikes and observations. */
+    static void rebuild(SQLiteDatabase db, String hikesTable, String obsTable) {
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL("DELETE FROM " + TABLE);
+            db.execSQL("INSERT INTO " + TABLE + "(dimension, key, hikes, distance, observations) " +
+                    recomputeSql(hikesTable, obsTable));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Number of rows that differ from a full recompute; 0 when the triggers kept up. */
+    static int countMismatches(SQLiteDatabase db, String hikesTable, String obsTable) {
+        String stored = "SELECT dimension, key, hikes, ROUND(distance, " + DISTANCE_DECIMALS + "), observations FROM " + TABLE;
+        String fresh = "SELECT dimension, key, hikes, ROUND(distance, " + DISTANCE_DECIMALS + "), observations FROM (" +
+                recomputeSql(hikesTable, obsTable) + ")";
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM (" + stored + " EXCEPT " + fresh +
+                " UNION ALL SELECT * FROM (" + fresh + " EXCEPT " + stored + "))", null);
+        try {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    // key of a hike row (alias.column) in the given dimension; never NULL
+    private static String keyOf(String dimension, String alias) {
+        switch (dimension) {
+            case DIM_MONTH:
+                return "IFNULL(strftime('%Y-%m', " + alias + ".date_epoch_day * 86400, 'unixepoch'), '')";
+            case DIM_DIFFICULTY:
+                return "IFNULL(" + alias + ".difficulty, '')";
+            case DIM_LOCATION:
+                return "IFNULL(" + alias + ".location, '')";
+            default:
+                return "''";
+        }
+    }
+
+    // sign is 1 or -1; a tombstoned row moves nothing
+    private static String bumpHike(String row, String sign, String observations) {
+        String live = "(" + row + ".deleted_at IS NULL)";
+        String hikes = sign + " * " + live;
+        String distance = sign + " * " + live + " * " + row + ".length";
+        observations = live + " * " + observations;
+        StringBuilder sql = new StringBuilder(bump(DIM_TOTAL, "''", hikes, distance, observations));
+        for (String dimension : DIMENSIONS) {
+            sql.append(bump(dimension, keyOf(dimension, row), hikes, distance, observations));
+        }
+        return sql.toString();
+    }
+
+    // the live parent hike supplies the keys; observations without one are not counted
+    private static String bumpObservation(String hikesTable, String row, String delta) {
+        String parent = " FROM " + hikesTable + " h WHERE h.id = " + row + ".hike_id AND h.deleted_at IS NULL)";
+        StringBuilder sql = new StringBuilder(bump(DIM_TOTAL, "''", "0", "0", delta + " * (SELECT COUNT(*)" + parent));
+        for (String dimension : DIMENSIONS) {
+            sql.append(bump(dimension, "(SELECT " + keyOf(dimension, "h") + parent, "0", "0", delta));
+        }
+        return sql.toString();
+    }
+
+    // a NULL key (missing parent) is skipped by OR IGNORE and matches no row below
+    private static String bump(String dimension, String key, String hikes, String distance, String observations) {
+        return "INSERT OR IGNORE INTO " + TABLE + "(dimension, key) VALUES ('" + dimension + "', " + key + "); " +
+                "UPDATE " + TABLE + " SET hikes = hikes + " + hikes +
+                ", distance = distance + IFNULL(" + distance + ", 0)" +
+                ", observations = observations + " + observations +
+                " WHERE dimension = '" + dimension + "' AND key = " + key + "; ";
+    }
+
+    private static String dropEmpty() {
+        return "DELETE FROM " + TABLE + " WHERE hikes = 0 AND observations = 0 AND dimension <> '" + DIM_TOTAL + "'; ";
+    }
+
+    private static String recomputeSql(String hikesTable, String obsTable) {
+        String perHikeObs = "(SELECT COUNT(*) FROM " + obsTable + " o WHERE o.hike_id = h.id)";
+        // the first select names the columns of the whole compound
+        StringBuilder sql = new StringBuilder("SELECT '" + DIM_TOTAL + "' AS dimension, '' AS key, " +
+                "COUNT(*) AS hikes, TOTAL(h.length) AS distance, " +
+                "IFNULL(SUM(" + perHikeObs + "), 0) AS observations FROM " + hikesTable + " h WHERE h.deleted_at IS NULL");
+        for (String dimension : DIMENSIONS) {
+            sql.append(" UNION ALL SELECT '").append(dimension).append("', ").append(keyOf(dimension, "h"))
+                    .append(", COUNT(*), TOTAL(h.length), SUM(").append(perHikeObs).append(") FROM ")
+                    .append(hikesTable).append(" h WHERE h.deleted_at IS NULL GROUP BY 2");
+        }
+        return sql.toString();
+    }
+}
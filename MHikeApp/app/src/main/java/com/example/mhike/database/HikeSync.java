@@ -0,0 +1,283 @@
+package com.example.mhike.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delta sync of hikes and observations with a shared server. Pushes the rows the
+ * change log marks as changed since the last push, then pulls the rows the server
+ * changed since the last pull, both in batches, hikes before observations.
+ * Each batch commits its cursor with its rows, so a failed or cancelled sync
+ * resumes at the next batch and the cost follows the number of changes.
+ *
+ * Conflicts are decided by version: a push names the server version the local
+ * edit was based on, and if the server has moved past it the server copy wins
+ * and replaces the local row.
+ * The HTTP calls run on the calling thread, which must not be the writer thread; each
+ * database step runs as its own short write task, so saves made meanwhile are not held
+ * up by the network. cancel() may be called from any thread.
+ */
+public class HikeSync {
+
+    private static final String TAG = "HikeSync";
+    private static final int BATCH_ROWS = 200;
+
+    public static class Result {
+        private final long pushed;
+        private final long pulled;
+        private final long conflicts;
+        private final long batches;
+        private final long millis;
+        private final boolean cancelled;
+
+        Result(long pushed, long pulled, long conflicts, long batches, long millis, boolean cancelled) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.conflicts = conflicts;
+            this.batches = batches;
+            this.millis = millis;
+            this.cancelled = cancelled;
+        }
+
+        public long getPushed() {
+            return pushed;
+        }
+
+        public long getPulled() {
+            return pulled;
+        }
+
+        // pushed rows the server rejected in favour of its newer copy
+        public long getConflicts() {
+            return conflicts;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public String toString() {
+            return pushed + " pushed, " + pulled + " pulled, " + conflicts + " conflicts in " + batches +
+                    " batches, " + millis + " ms" + (cancelled ? ", cancelled" : "");
+        }
+    }
+
+    private volatile boolean cancelled;
+
+    private long pushed, pulled, conflicts, batches;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** Returns null if the server could not be reached or answered badly; completed batches stay. */
+    public Result sync(HikeRepository repository, SyncTransport transport) {
+        long start = SystemClock.elapsedRealtime();
+        pushed = pulled = conflicts = batches = 0;
+        try {
+            push(repository, transport, DatabaseHelper.SYNC_HIKES);
+            push(repository, transport, DatabaseHelper.SYNC_OBSERVATIONS);
+            pull(repository, transport, DatabaseHelper.SYNC_HIKES);
+            pull(repository, transport, DatabaseHelper.SYNC_OBSERVATIONS);
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "sync error after " + batches + " batches", e);
+            return null;
+        }
+
+        Result result = new Result(pushed, pulled, conflicts, batches, SystemClock.elapsedRealtime() - start, cancelled);
+        Log.i(TAG, "sync: " + result);
+        return result;
+    }
+
+    private void push(HikeRepository repository, SyncTransport transport, String table) throws IOException, JSONException {
+        String cursorKey = SyncTables.pushCursorKey(table);
+        long after = onWriter(repository, db -> db.getSyncCursor(cursorKey));
+        // seq of the first change held back; the stored cursor stays below it
+        long heldSeq = 0;
+        while (!cancelled) {
+            long readAfter = after;
+            List<SyncRow> pending = onWriter(repository, db -> db.loadPendingChanges(table, readAfter, BATCH_ROWS));
+            if (pending.isEmpty()) break;
+
+            // an observation waits until its hike has a server id (a hike tombstoned before its
+            // first push never gets one, and its observations go with the purge); the rest go now
+            List<SyncRow> batch = new ArrayList<>(pending.size());
+            for (SyncRow row : pending) {
+                if (row.observation != null && row.hikeGlobalId == null) {
+                    if (heldSeq == 0) heldSeq = row.seq;
+                    continue;
+                }
+                batch.add(row);
+            }
+            after = pending.get(pending.size() - 1).seq;
+
+            if (!batch.isEmpty()) {
+                pushBatch(repository, transport, table, batch, heldSeq > 0 ? heldSeq - 1 : after);
+                batches++;
+            }
+            if (pending.size() < BATCH_ROWS) break;
+        }
+    }
+
+    // sends one batch and records the answer, moving the stored push cursor to cursorSeq
+    private void pushBatch(HikeRepository repository, SyncTransport transport, String table, List<SyncRow> batch,
+                           long cursorSeq) throws IOException, JSONException {
+        long[] versions = new long[batch.size()];
+        List<Integer> sent = new ArrayList<>();
+        JSONArray rows = new JSONArray();
+        for (int i = 0; i < batch.size(); i++) {
+            SyncRow row = batch.get(i);
+            if (row.deleted && row.globalId == null) continue; // never reached the server
+            sent.add(i);
+            rows.put(toJson(row));
+        }
+
+        if (!sent.isEmpty()) {
+            JSONObject response = transport.push(new JSONObject().put("table", table).put("rows", rows));
+            JSONArray results = response.getJSONArray("results");
+            if (results.length() != sent.size()) {
+                throw new IOException("sync server answered " + results.length() + " of " + sent.size() + " rows");
+            }
+            List<SyncRow> rejected = new ArrayList<>();
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject answer = results.getJSONObject(i);
+                if ("ok".equals(answer.getString("status"))) {
+                    versions[sent.get(i)] = answer.getLong("version");
+                } else {
+                    versions[sent.get(i)] = -1;
+                    rejected.add(fromJson(table, answer));
+                }
+            }
+            if (!rejected.isEmpty()) {
+                if (onWriter(repository, db -> db.applyPulledRows(table, rejected, null, 0)) < 0) {
+                    throw new IOException("could not apply server copies of conflicting rows");
+                }
+                conflicts += rejected.size();
+            }
+        }
+
+        if (!onWriter(repository, db -> db.markPushed(table, batch, versions, cursorSeq))) {
+            throw new IOException("could not record pushed batch");
+        }
+        pushed += sent.size() - countRejected(versions);
+    }
+
+    private void pull(HikeRepository repository, SyncTransport transport, String table) throws IOException, JSONException {
+        String cursorKey = SyncTables.pullCursorKey(table);
+        long since = onWriter(repository, db -> db.getSyncCursor(cursorKey));
+        while (!cancelled) {
+            JSONObject response = transport.pull(table, since, BATCH_ROWS);
+            JSONArray list = response.getJSONArray("rows");
+            if (list.length() == 0) break;
+
+            List<SyncRow> rows = new ArrayList<>(list.length());
+            long newest = since;
+            for (int i = 0; i < list.length(); i++) {
+                SyncRow row = fromJson(table, list.getJSONObject(i));
+                rows.add(row);
+                newest = Math.max(newest, row.version);
+            }
+            long pulledUpTo = newest;
+            int applied = onWriter(repository, db -> db.applyPulledRows(table, rows, cursorKey, pulledUpTo));
+            if (applied < 0) throw new IOException("could not apply pulled batch");
+            since = newest;
+            pulled += applied;
+            batches++;
+            if (!response.optBoolean("has_more")) break;
+        }
+    }
+
+    // one database step as its own write task, waited for on this (network) thread
+    private static <T> T onWriter(HikeRepository repository, HikeRepository.Query<T> step) throws IOException {
+        T result;
+        try {
+            result = repository.awaitWrite(step);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("sync interrupted");
+        }
+        if (result == null) throw new IOException("sync database step failed");
+        return result;
+    }
+
+    private static int countRejected(long[] versions) {
+        int n = 0;
+        for (long v : versions) if (v < 0) n++;
+        return n;
+    }
+
+    private static JSONObject toJson(SyncRow row) throws JSONException {
+        JSONObject obj = new JSONObject()
+                .put("id", row.globalId)
+                .put("base_version", row.version)
+                .put("deleted", row.deleted);
+        JSONObject data = new JSONObject();
+        if (row.hike != null) {
+            Hike hike = row.hike;
+            data.put("name", hike.getName())
+                    .put("location", hike.getLocation())
+                    .put("date", hike.getDate())
+                    .put("parking", hike.isParking())
+                    .put("length", hike.getLength())
+                    .put("difficulty", hike.getDifficulty())
+                    .put("description", hike.getDescription())
+                    .put("weather", hike.getWeather())
+                    .put("group_size", hike.getGroupSize());
+        } else if (row.observation != null) {
+            Observation obs = row.observation;
+            data.put("hike", row.hikeGlobalId)
+                    .put("observation", obs.getObservationText())
+                    .put("time", obs.getTime())
+                    .put("comments", obs.getComments());
+        }
+        if (!row.deleted) obj.put("data", data);
+        return obj;
+    }
+
+    private static SyncRow fromJson(String table, JSONObject obj) throws JSONException {
+        String id = obj.getString("id");
+        long version = obj.getLong("version");
+        if (obj.optBoolean("deleted")) return new SyncRow(id, version, true, null, null, null);
+
+        JSONObject data = obj.getJSONObject("data");
+        if (DatabaseHelper.SYNC_HIKES.equals(table)) {
+            Hike hike = new Hike();
+            hike.setName(data.optString("name"));
+            hike.setLocation(data.optString("location"));
+            hike.setDate(data.optString("date"));
+            hike.setParking(data.optBoolean("parking"));
+            hike.setLength(data.optDouble("length", 0));
+            hike.setDifficulty(data.optString("difficulty", "Easy"));
+            hike.setDescription(data.optString("description"));
+            hike.setWeather(data.optString("weather"));
+            hike.setGroupSize(data.optInt("group_size"));
+            return new SyncRow(id, version, false, hike, null, null);
+        }
+        Observation obs = new Observation();
+        obs.setObservationText(data.optString("observation"));
+        obs.setTime(data.optString("time"));
+        obs.setComments(data.optString("comments"));
+        return new SyncRow(id, version, false, null, obs, data.getString("hike"));
+    }
+}
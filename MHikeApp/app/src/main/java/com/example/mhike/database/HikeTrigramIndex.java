@@ -0,0 +1,388 @@
+package com.example.mhike.database;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.HikeMatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory trigram index over hike name and location, so substring and
+ * "looks like" lookups skip the full-table LIKE '%x%' scan.
+ * Each trigram maps to a sorted int[] of hike ids. The words of those fields
+ * are also kept in a BkTree for typo-tolerant lookups. The index is built from
+ * getAllHikes on first use and then follows the change events: deletes are
+ * applied at once, inserted/updated hikes are re-read before the next query.
+ * Only ids and the indexed strings are kept; the hikes a lookup returns are read
+ * through DatabaseHelper.getHikesByIds, so callers never share a model with the index.
+ */
+final class HikeTrigramIndex implements DatabaseHelper.ChangeListener {
+
+    private static final String TAG = "HikeTrigramIndex";
+
+    // trigram overlap (Jaccard) a hike needs to count as similar
+    static final double MIN_SIMILARITY = 0.3;
+
+    // newest first, like HIKE_ORDER_BY
+    private static final Comparator<Entry> NEWEST_FIRST = (a, b) -> {
+        int byDate = Long.compare(b.dateKey, a.dateKey);
+        return byDate != 0 ? byDate : Integer.compare(b.id, a.id);
+    };
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final SparseArray<Entry> entries = new SparseArray<>();
+    // word -> hikes using it; words whose list empties stay in the tree and are skipped
+    private final Map<String, PostingList> wordPostings = new HashMap<>();
+    private final BkTree vocabulary = new BkTree();
+    // written hikes whose entry is re-read before the next query
+    private final Set<Integer> stale = new HashSet<>();
+    private boolean built;
+
+    HikeTrigramIndex(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /** Hikes whose name or location contains the text, newest first. */
+    synchronized List<Hike> search(String text) {
+        ensureCurrent();
+        String needle = normalize(text);
+        List<Entry> found = new ArrayList<>();
+
+        if (needle.length() < 3) {
+            // too short for a trigram, but the entries are already in memory
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.valueAt(i);
+                if (entry.contains(needle)) found.add(entry);
+            }
+        } else {
+            for (int id : candidates(needle)) {
+                Entry entry = entries.get(id);
+                // shared trigrams do not prove the substring, so check the text
+                if (entry != null && entry.contains(needle)) found.add(entry);
+            }
+        }
+
+        Collections.sort(found, NEWEST_FIRST);
+        int[] ids = new int[found.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = found.get(i).id;
+        return dbHelper.getHikesByIds(ids);
+    }
+
+    /** Up to limit hikes ranked by trigram overlap with the text, best first. */
+    synchronized List<HikeMatch> similar(String text, int limit) {
+        ensureCurrent();
+        long[] grams = trigrams(normalize(text));
+        if (grams.length == 0 || limit <= 0) return new ArrayList<>();
+
+        SparseIntArray shared = new SparseIntArray();
+        List<Scored> scored = new ArrayList<>();
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) continue;
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                shared.put(id, shared.get(id) + 1);
+            }
+        }
+
+        for (int i = 0; i < shared.size(); i++) {
+            Entry entry = entries.get(shared.keyAt(i));
+            if (entry == null) continue;
+            int common = shared.valueAt(i);
+            double score = common / (double) (grams.length + entry.grams.length - common);
+            if (score >= MIN_SIMILARITY) scored.add(new Scored(entry.id, score));
+        }
+        Collections.sort(scored, (a, b) -> Double.compare(b.score, a.score));
+        return toMatches(scored.size() > limit ? scored.subList(0, limit) : scored);
+    }
+
+    /**
+     * Up to limit hikes ranked by how closely their name/location words match the
+     * query words, allowing a few typos per word (Damerau distance). The score is
+     * the mean closeness of each query word to its nearest hike word, 0..1.
+     */
+    synchronized List<HikeMatch> fuzzy(String text, int limit) {
+        ensureCurrent();
+        List<String> tokens = HikeFullText.tokens(text);
+        if (tokens.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        Map<Integer, Double> totals = new HashMap<>();
+        for (String token : tokens) {
+            int maxTypos = maxTypos(token.length());
+            Map<Integer, Double> best = new HashMap<>();
+            // Levenshtein counts a swap as 2, so search wider and let damerau() decide
+            vocabulary.search(token, 2 * maxTypos, (word, levenshtein) -> {
+                PostingList hikes = wordPostings.get(word);
+                if (hikes == null) return;
+                int typos = EditDistance.damerau(token, word, maxTypos);
+                if (typos > maxTypos) return;
+                double closeness = 1.0 - typos / (double) Math.max(token.length(), word.length());
+                for (int i = 0; i < hikes.size; i++) best.merge(hikes.ids[i], closeness, Math::max);
+            });
+            for (Map.Entry<Integer, Double> hit : best.entrySet()) totals.merge(hit.getKey(), hit.getValue(), Double::sum);
+        }
+
+        // keep only the best limit, the worst kept match sits on top of the heap
+        Comparator<Scored> byScore = (a, b) -> {
+            int cmp = Double.compare(a.score, b.score);
+            return cmp != 0 ? cmp : Integer.compare(a.id, b.id);
+        };
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit, byScore);
+        for (Map.Entry<Integer, Double> total : totals.entrySet()) {
+            if (entries.get(total.getKey()) == null) continue;
+            top.add(new Scored(total.getKey(), total.getValue() / tokens.size()));
+            if (top.size() > limit) top.poll();
+        }
+        List<Scored> ranked = new ArrayList<>(top);
+        Collections.sort(ranked, Collections.reverseOrder(byScore));
+        return toMatches(ranked);
+    }
+
+    // reads the ranked hikes in one go; a hike deleted since the last change event is dropped
+    private List<HikeMatch> toMatches(List<Scored> scored) {
+        int[] ids = new int[scored.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = scored.get(i).id;
+        List<Hike> hikes = dbHelper.getHikesByIds(ids);
+        List<HikeMatch> matches = new ArrayList<>(hikes.size());
+        int next = 0;
+        for (Hike hike : hikes) {
+            while (scored.get(next).id != hike.getId()) next++;
+            matches.add(new HikeMatch(hike, null, scored.get(next++).score));
+        }
+        return matches;
+    }
+
+    // short words tolerate fewer typos, or everything would match them
+    private static int maxTypos(int length) {
+        if (length <= 2) return 0;
+        return length <= 5 ? 1 : 2;
+    }
+
+    @Override
+    public synchronized void onChange(DbChange change) {
+        if (change.getTable() != DbChange.Table.HIKES || !built) return;
+        switch (change.getOp()) {
+            case INSERT:
+            case UPDATE:
+                for (int id : change.getIds()) stale.add(id);
+                break;
+            case DELETE:
+                for (int id : change.getIds()) {
+                    stale.remove(id);
+                    remove(id);
+                }
+                break;
+            case CLEAR:
+                postings.clear();
+                entries.clear();
+                wordPostings.clear();
+                vocabulary.clear();
+                stale.clear();
+                // a restore also reports CLEAR, so read the table again on the next query
+                built = false;
+                break;
+        }
+    }
+
+    private void ensureCurrent() {
+        if (!built) {
+            long start = SystemClock.elapsedRealtime();
+            for (Hike hike : dbHelper.getAllHikes()) add(hike);
+            built = true;
+            Log.d(TAG, "built: " + entries.size() + " hikes, " + postings.size() + " trigrams in " +
+                    (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+        if (!stale.isEmpty()) {
+            for (int id : stale) {
+                remove(id);
+                Hike hike = dbHelper.getHike(id);
+                if (hike != null) add(hike);
+            }
+            stale.clear();
+        }
+    }
+
+    // ids present in every posting list of the needle's trigrams
+    private int[] candidates(String needle) {
+        long[] grams = substringTrigrams(needle);
+        PostingList[] lists = new PostingList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) return new int[0];
+        }
+        // walk the shortest list, probe the others
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = new int[lists[0].size];
+        int count = 0;
+        for (int i = 0; i < lists[0].size; i++) {
+            int id = lists[0].ids[i];
+            boolean inAll = true;
+            for (int l = 1; l < lists.length && inAll; l++) {
+                inAll = lists[l].contains(id);
+            }
+            if (inAll) result[count++] = id;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private void add(Hike hike) {
+        Entry entry = new Entry(hike.getId(), hike.getName(), hike.getLocation(), hike.getDate());
+        entries.put(hike.getId(), entry);
+        for (long gram : entry.grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(gram, list);
+            }
+            list.add(hike.getId());
+        }
+        for (String word : entry.words) {
+            PostingList list = wordPostings.get(word);
+            if (list == null) {
+                list = new PostingList();
+                wordPostings.put(word, list);
+                vocabulary.add(word);
+            }
+            list.add(hike.getId());
+        }
+    }
+
+    private void remove(int id) {
+        Entry entry = entries.get(id);
+        if (entry == null) return;
+        entries.remove(id);
+        for (long gram : entry.grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) continue;
+            list.remove(id);
+            if (list.size == 0) postings.remove(gram);
+        }
+        for (String word : entry.words) {
+            PostingList list = wordPostings.get(word);
+            if (list == null) continue;
+            list.remove(id);
+            if (list.size == 0) wordPostings.remove(word);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // distinct trigrams of the text, each packed into one long (3 x 16-bit chars)
+    private static long[] trigrams(String text) {
+        Set<Long> grams = new LinkedHashSet<>();
+        addTrigrams(text, grams);
+        return toArray(grams);
+    }
+
+    // a substring may sit anywhere in a field, so no padding here
+    private static long[] substringTrigrams(String needle) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) grams.add(pack(needle, i));
+        return toArray(grams);
+    }
+
+    private static void addTrigrams(String text, Set<Long> into) {
+        // padded so short words and word edges still produce trigrams
+        String padded = " " + text + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) into.add(pack(padded, i));
+    }
+
+    private static long pack(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long[] toArray(Set<Long> grams) {
+        long[] out = new long[grams.size()];
+        int i = 0;
+        for (long gram : grams) out[i++] = gram;
+        return out;
+    }
+
+    private static final class Scored {
+        final int id;
+        final double score;
+
+        Scored(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    // what the index needs of a hike: its id and the normalized indexed text
+    private static final class Entry {
+        final int id;
+        final String name;
+        final String location;
+        final long dateKey;
+        final long[] grams;
+        final String[] words;
+
+        Entry(int id, String name, String location, String date) {
+            this.id = id;
+            this.name = normalize(name);
+            this.location = normalize(location);
+            Long epochDay = EpochDates.toEpochDay(date);
+            // unparseable dates sort last, as NULL does in SQL DESC order
+            dateKey = epochDay != null ? epochDay : Long.MIN_VALUE;
+
+            // fields are indexed separately so no trigram spans name and location
+            Set<Long> all = new LinkedHashSet<>();
+            addTrigrams(this.name, all);
+            addTrigrams(this.location, all);
+            grams = toArray(all);
+
+            Set<String> distinct = new LinkedHashSet<>(HikeFullText.tokens(this.name));
+            distinct.addAll(HikeFullText.tokens(this.location));
+            words = distinct.toArray(new String[0]);
+        }
+
+        boolean contains(String needle) {
+            return name.contains(needle) || location.contains(needle);
+        }
+    }
+
+    /** Sorted, growable int[] of hike ids. */
+    private static final class PostingList {
+        int[] ids = new int[4];
+        int size;
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) return;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+    }
+}
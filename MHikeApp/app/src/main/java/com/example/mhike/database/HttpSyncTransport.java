@@ -0,0 +1,87 @@
+package com.example.mhike.database;
+
+import android.net.Uri;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/** SyncTransport over HTTP: POST {baseUrl}/push and GET {baseUrl}/changes. */
+public class HttpSyncTransport implements SyncTransport {
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final String baseUrl;
+
+    public HttpSyncTransport(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public JSONObject push(JSONObject request) throws IOException {
+        HttpURLConnection conn = open(baseUrl + "/push");
+        try {
+            byte[] body = request.toString().getBytes(StandardCharsets.UTF_8);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            conn.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+            return readResponse(conn);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Override
+    public JSONObject pull(String table, long since, int limit) throws IOException {
+        String url = Uri.parse(baseUrl + "/changes").buildUpon()
+                .appendQueryParameter("table", table)
+                .appendQueryParameter("since", String.valueOf(since))
+                .appendQueryParameter("limit", String.valueOf(limit))
+                .build().toString();
+        HttpURLConnection conn = open(url);
+        try {
+            conn.setRequestMethod("GET");
+            return readResponse(conn);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setRequestProperty("Accept", "application/json");
+        return conn;
+    }
+
+    private static JSONObject readResponse(HttpURLConnection conn) throws IOException {
+        int code = conn.getResponseCode();
+        if (code / 100 != 2) throw new IOException("sync server answered HTTP " + code);
+        StringBuilder text = new StringBuilder();
+        try (InputStream in = conn.getInputStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) text.append(buffer, 0, n);
+        }
+        try {
+            return new JSONObject(text.toString());
+        } catch (JSONException e) {
+            throw new IOException("sync server sent invalid JSON", e);
+        }
+    }
+}
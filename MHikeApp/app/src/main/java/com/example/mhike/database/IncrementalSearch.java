@@ -0,0 +1,67 @@
+package com.example.mhike.database;
+
+import com.example.mhike.models.Hike;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the last full-text result set so search-as-you-type can skip the
+ * database while the user keeps extending the query. "lak" -> "lake" can only
+ * narrow the matches, so the previous hikes are filtered in memory instead.
+ * Only a complete result (fewer rows than the limit) may be refined this way.
+ * Not thread-safe; used from the main thread.
+ */
+public class IncrementalSearch {
+
+    private final int limit;
+    private List<String> lastTokens;
+    private List<Hike> lastResults;
+
+    public IncrementalSearch(int limit) {
+        this.limit = limit;
+    }
+
+    /** The narrowed results of the previous query, or null when the database must be asked. */
+    public List<Hike> refine(String query) {
+        if (lastResults == null) return null;
+        List<String> tokens = HikeFullText.tokens(query);
+        if (tokens.isEmpty() || !narrows(lastTokens, tokens)) return null;
+
+        List<Hike> refined = new ArrayList<>();
+        for (Hike hike : lastResults) {
+            if (HikeFullText.matches(hike, tokens)) refined.add(hike);
+        }
+        return refined;
+    }
+
+    public void remember(String query, List<Hike> results) {
+        if (results == null || results.size() >= limit) {
+            // truncated, rows past the limit might match the longer query
+            reset();
+            return;
+        }
+        lastTokens = HikeFullText.tokens(query);
+        lastResults = new ArrayList<>(results);
+    }
+
+    public void reset() {
+        lastTokens = null;
+        lastResults = null;
+    }
+
+    // every old prefix term is a prefix of some new one, so new matches are a subset
+    private static boolean narrows(List<String> oldTokens, List<String> newTokens) {
+        for (String oldToken : oldTokens) {
+            boolean covered = false;
+            for (String newToken : newTokens) {
+                if (newToken.startsWith(oldToken)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) return false;
+        }
+        return true;
+    }
+}
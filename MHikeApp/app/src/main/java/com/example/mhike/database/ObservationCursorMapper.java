@@ -0,0 +1,45 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+
+import com.example.mhike.models.Observation;
+
+/**
+ * Reads Observation rows by column index, resolving legacy column variants
+ * (hike, timestamp, obs_time) once per cursor instead of once per row.
+ */
+final class ObservationCursorMapper {
+
+    private final int idIdx;
+    private final int hikeRefIdx;
+    private final int contentIdx;
+    private final int timeIdx;
+    private final int notesIdx;
+
+    ObservationCursorMapper(Cursor c) {
+        idIdx = c.getColumnIndex("id");
+        hikeRefIdx = firstIndex(c, "hike_id", "hike");
+        contentIdx = c.getColumnIndex("observation_text");
+        timeIdx = firstIndex(c, "time", "timestamp", "obs_time");
+        // only comments is read back, as before; a legacy notes column is write-only
+        notesIdx = c.getColumnIndex("comments");
+    }
+
+    private static int firstIndex(Cursor c, String... names) {
+        for (String name : names) {
+            int idx = c.getColumnIndex(name);
+            if (idx >= 0) return idx;
+        }
+        return -1;
+    }
+
+    Observation map(Cursor c) {
+        Observation obsData = new Observation();
+        obsData.setId(idIdx >= 0 ? c.getInt(idIdx) : 0);
+        obsData.setHikeId(hikeRefIdx >= 0 ? c.getInt(hikeRefIdx) : 0);
+        obsData.setObservationText(contentIdx >= 0 ? c.getString(contentIdx) : "");
+        obsData.setTime(timeIdx >= 0 ? c.getString(timeIdx) : "");
+        obsData.setComments(notesIdx >= 0 ? c.getString(notesIdx) : "");
+        return obsData;
+    }
+}
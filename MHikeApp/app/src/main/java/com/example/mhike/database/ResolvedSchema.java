@@ -0,0 +1,112 @@
+package com.example.mhike.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Physical column names of the hikes/observations tables, probed once with
+ * PRAGMA table_info after the database is opened. Older installs used different
+ * names for some columns (parking_available, distance, level, ...), so every
+ * logical field is mapped to whichever variant actually exists.
+ * A null column means the table has no variant of that field.
+ */
+final class ResolvedSchema {
+
+    private static final String TAG = "ResolvedSchema";
+
+    final Set<String> hikeColumns;
+    final Set<String> obsColumns;
+
+    // hikes
+    final String hikeName;
+    final String hikeLocation;
+    final String hikeDate;
+    final String hikeDateEpoch;
+    final List<String> hikeParking;   // every parking variant is written
+    final String hikeParkingRead;     // legacy parking_available wins on read
+    final String hikeDistance;
+    final String hikeLevel;
+    final String hikeInfo;
+    final String hikeWeather;
+    final String hikeTeam;
+
+    // observations
+    final String obsHikeRef;
+    final String obsContent;
+    final List<String> obsTime;       // every time variant is written
+    final String obsTimeRead;
+    final String obsTimeEpoch;
+    final String obsNotes;
+    final String obsOrderBy;
+
+    private ResolvedSchema(Set<String> hikeColumns, Set<String> obsColumns) {
+        this.hikeColumns = hikeColumns;
+        this.obsColumns = obsColumns;
+
+        hikeName = first(hikeColumns, "name");
+        hikeLocation = first(hikeColumns, "location");
+        hikeDate = first(hikeColumns, "date");
+        hikeDateEpoch = first(hikeColumns, "date_epoch_day");
+        hikeParking = all(hikeColumns, "parking", "parking_available", "has_parking");
+        hikeParkingRead = first(hikeColumns, "parking_available", "parking");
+        hikeDistance = first(hikeColumns, "length", "distance");
+        hikeLevel = first(hikeColumns, "difficulty", "level");
+        hikeInfo = first(hikeColumns, "description", "info");
+        hikeWeather = first(hikeColumns, "weather", "weather_info");
+        hikeTeam = first(hikeColumns, "group_size", "group");
+
+        obsHikeRef = first(obsColumns, "hike_id", "hike");
+        obsContent = first(obsColumns, "observation_text", "content");
+        obsTime = all(obsColumns, "time", "timestamp", "obs_time");
+        obsTimeRead = obsTime.isEmpty() ? null : obsTime.get(0);
+        obsTimeEpoch = first(obsColumns, "time_epoch_ms");
+        obsNotes = first(obsColumns, "comments", "notes");
+        // prefer the numeric column, the text ones sort dd/MM lexicographically
+        String sortCol = obsTimeEpoch != null ? obsTimeEpoch : obsTimeRead;
+        obsOrderBy = (sortCol != null ? sortCol + " DESC, " : "") + "id DESC";
+    }
+
+    static ResolvedSchema resolve(SQLiteDatabase db, String hikesTable, String obsTable) {
+        ResolvedSchema schema = new ResolvedSchema(readColumns(db, hikesTable), readColumns(db, obsTable));
+        Log.d(TAG, hikesTable + " " + schema.hikeColumns + ", " + obsTable + " " + schema.obsColumns);
+        return schema;
+    }
+
+    private static Set<String> readColumns(SQLiteDatabase db, String tableName) {
+        Set<String> cols = new HashSet<>();
+        Cursor c = null;
+        try {
+            c = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
+            int nameIdx = c.getColumnIndexOrThrow("name");
+            while (c.moveToNext()) {
+                cols.add(c.getString(nameIdx));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "readColumns error", e);
+        } finally {
+            if (c != null) c.close();
+        }
+        return cols;
+    }
+
+    private static String first(Set<String> cols, String... candidates) {
+        for (String candidate : candidates) {
+            if (cols.contains(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    private static List<String> all(Set<String> cols, String... candidates) {
+        List<String> found = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (cols.contains(candidate)) found.add(candidate);
+        }
+        return found;
+    }
+}
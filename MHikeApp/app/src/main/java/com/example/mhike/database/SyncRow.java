@@ -0,0 +1,34 @@
+package com.example.mhike.database;
+
+import com.example.mhike.models.Hike;
+import com.example.mhike.models.Observation;
+
+/**
+ * One hike or observation as exchanged with the sync server: a local change on its
+ * way out, or a server row on its way in. Exactly one of hike/observation is set
+ * unless the row is deleted.
+ */
+final class SyncRow {
+
+    final String globalId;
+    // server version: the base the change was made on when pushing, the row's own when pulled
+    final long version;
+    final boolean deleted;
+    final Hike hike;
+    final Observation observation;
+    // server id of the observation's hike
+    final String hikeGlobalId;
+
+    // local side, for pushed rows
+    int localId;
+    long seq;
+
+    SyncRow(String globalId, long version, boolean deleted, Hike hike, Observation observation, String hikeGlobalId) {
+        this.globalId = globalId;
+        this.version = version;
+        this.deleted = deleted;
+        this.hike = hike;
+        this.observation = observation;
+        this.hikeGlobalId = hikeGlobalId;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mhike.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Local bookkeeping for HikeSync.
+ * sync_rows maps a local row to its id on the server (a UUID, since local ids
+ * collide between devices), the server version last seen for it, and the
+ * change_log seq that version corresponds to. A log entry newer than synced_seq
+ * is a local change the server has not seen.
+ * sync_state holds the resumable cursors: the change_log seq pushed so far and
+ * the server version pulled so far, per table.
+ */
+final class SyncTables {
+
+    static final String ROWS = "sync_rows";
+    static final String STATE = "sync_state";
+
+    private SyncTables() {
+    }
+
+    static void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + ROWS + "(" +
+                "tbl TEXT NOT NULL," +
+                "row_id INTEGER NOT NULL," +
+                "global_id TEXT NOT NULL," +
+                "version INTEGER NOT NULL," +
+                "synced_seq INTEGER NOT NULL," +
+                "PRIMARY KEY(tbl, row_id)) WITHOUT ROWID");
+        // pulled rows are looked up by their server id
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_" + ROWS + "_global ON " + ROWS + "(tbl, global_id)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + STATE + "(" +
+                "key TEXT PRIMARY KEY," +
+                "value INTEGER NOT NULL) WITHOUT ROWID");
+    }
+
+    static String pushCursorKey(String table) {
+        return "push_seq:" + table;
+    }
+
+    static String pullCursorKey(String table) {
+        return "pull_version:" + table;
+    }
+}
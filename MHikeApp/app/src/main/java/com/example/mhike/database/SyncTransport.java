@@ -0,0 +1,23 @@
+package com.example.mhike.database;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * The sync server as HikeSync sees it. HttpSyncTransport talks to a real endpoint;
+ * anything answering the same JSON (a local stand-in server, a fake) can replace it.
+ *
+ * push: {"table", "rows": [{"id", "base_version", "deleted", "data"}]} is answered with
+ * {"results": [...]} in the same order, each {"id", "status": "ok", "version"} or
+ * {"id", "status": "conflict", "version", "deleted", "data"} carrying the server's copy.
+ * pull: rows of table with a version above since, ascending, at most limit of them:
+ * {"rows": [{"id", "version", "deleted", "data"}], "has_more"}.
+ * Versions are assigned by the server from one increasing counter.
+ */
+public interface SyncTransport {
+
+    JSONObject push(JSONObject request) throws IOException;
+
+    JSONObject pull(String table, long since, int limit) throws IOException;
+}
@@ -1,8 +1,9 @@
 package com.example.mhike.models;
 
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
 
-public class Hike implements Serializable {
+public class Hike implements Parcelable {
     private int id;
     private String name;
     private String location;
@@ -32,6 +33,65 @@ public class Hike implements Serializable {
         this.groupSize = groupSize;
     }
 
+    // copy, so a shared (e.g. cached) hike can be edited without changing the original
+    public Hike(Hike other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.location = other.location;
+        this.date = other.date;
+        this.parking = other.parking;
+        this.length = other.length;
+        this.difficulty = other.difficulty;
+        this.description = other.description;
+        this.weather = other.weather;
+        this.groupSize = other.groupSize;
+    }
+
+    // Parcelable: fields are written and read back in declaration order
+    protected Hike(Parcel in) {
+        id = in.readInt();
+        name = in.readString();
+        location = in.readString();
+        date = in.readString();
+        parking = in.readByte() != 0;
+        length = in.readDouble();
+        difficulty = in.readString();
+        description = in.readString();
+        weather = in.readString();
+        groupSize = in.readInt();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(id);
+        dest.writeString(name);
+        dest.writeString(location);
+        dest.writeString(date);
+        dest.writeByte((byte) (parking ? 1 : 0));
+        dest.writeDouble(length);
+        dest.writeString(difficulty);
+        dest.writeString(description);
+        dest.writeString(weather);
+        dest.writeInt(groupSize);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Hike> CREATOR = new Creator<Hike>() {
+        @Override
+        public Hike createFromParcel(Parcel in) {
+            return new Hike(in);
+        }
+
+        @Override
+        public Hike[] newArray(int size) {
+            return new Hike[size];
+        }
+    };
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -0,0 +1,27 @@
+package com.example.mhike.models;
+
+public class HikeMatch {
+    private final Hike hike;
+    private final String snippet;
+    private final double score;
+
+    public HikeMatch(Hike hike, String snippet, double score) {
+        this.hike = hike;
+        this.snippet = snippet;
+        this.score = score;
+    }
+
+    public Hike getHike() {
+        return hike;
+    }
+
+    // matched text with the hit terms wrapped in <b></b>; null when the search has none
+    public String getSnippet() {
+        return snippet;
+    }
+
+    // relevance, higher is better (BM25 for full-text matches)
+    public double getScore() {
+        return score;
+    }
+}
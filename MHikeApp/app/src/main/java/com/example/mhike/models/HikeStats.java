@@ -0,0 +1,53 @@
+package com.example.mhike.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class HikeStats {
+    private int totalHikes;
+    private double totalDistance;
+    private int totalObservations;
+    private final Map<String, Integer> hikesByDifficulty = new LinkedHashMap<>();
+    private final Map<String, Integer> hikesByMonth = new LinkedHashMap<>();
+    private final Map<String, Integer> hikesByLocation = new LinkedHashMap<>();
+
+    public int getTotalHikes() {
+        return totalHikes;
+    }
+
+    public void setTotalHikes(int totalHikes) {
+        this.totalHikes = totalHikes;
+    }
+
+    // km
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public void setTotalDistance(double totalDistance) {
+        this.totalDistance = totalDistance;
+    }
+
+    public int getTotalObservations() {
+        return totalObservations;
+    }
+
+    public void setTotalObservations(int totalObservations) {
+        this.totalObservations = totalObservations;
+    }
+
+    // most common first
+    public Map<String, Integer> getHikesByDifficulty() {
+        return hikesByDifficulty;
+    }
+
+    // most visited first
+    public Map<String, Integer> getHikesByLocation() {
+        return hikesByLocation;
+    }
+
+    // "yyyy-MM" -> hikes, newest month first; undated hikes are not counted
+    public Map<String, Integer> getHikesByMonth() {
+        return hikesByMonth;
+    }
+}
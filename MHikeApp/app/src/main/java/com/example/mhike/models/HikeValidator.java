@@ -0,0 +1,85 @@
+package com.example.mhike.models;
+
+import java.util.Locale;
+
+/**
+ * Field rules for a hike, shared by the add/edit form and the file importer.
+ * Each check returns the error message to show, or null when the value is fine.
+ */
+public final class HikeValidator {
+
+    private HikeValidator() {
+    }
+
+    public static String checkName(String name) {
+        return isBlank(name) ? "Name is required" : null;
+    }
+
+    public static String checkLocation(String location) {
+        return isBlank(location) ? "Location is required" : null;
+    }
+
+    public static String checkDate(String date) {
+        return isBlank(date) ? "Date is required" : null;
+    }
+
+    public static String checkLength(String lengthText) {
+        if (isBlank(lengthText)) return "Length is required";
+        try {
+            if (Double.parseDouble(lengthText.trim()) <= 0) return "Length must be greater than 0";
+        } catch (NumberFormatException e) {
+            return "Invalid length format";
+        }
+        return null;
+    }
+
+    public static String checkObservationText(String text) {
+        return isBlank(text) ? "Observation text is required" : null;
+    }
+
+    /** Yes/No as written by the form and the exporter (true/false and 1/0 also work); null if neither. */
+    public static Boolean parseParking(String text) {
+        if (text == null) return null;
+        switch (text.trim().toLowerCase(Locale.ROOT)) {
+            case "yes":
+            case "true":
+            case "1":
+                return true;
+            case "no":
+            case "false":
+            case "0":
+                return false;
+            default:
+                return null;
+        }
+    }
+
+    /** One of the form's difficulty options in its canonical case, or null. */
+    public static String parseDifficulty(String text) {
+        if (text == null) return null;
+        switch (text.trim().toLowerCase(Locale.ROOT)) {
+            case "easy":
+                return "Easy";
+            case "medium":
+                return "Medium";
+            case "hard":
+                return "Hard";
+            default:
+                return null;
+        }
+    }
+
+    // the form treats a bad group size as 0 rather than an error
+    public static int parseGroupSize(String text) {
+        if (isBlank(text)) return 0;
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
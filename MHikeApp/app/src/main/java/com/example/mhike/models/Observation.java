@@ -1,8 +1,9 @@
 package com.example.mhike.models;
 
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
 
-public class Observation implements Serializable {
+public class Observation implements Parcelable {
     private int id;
     private int hikeId;
     private String observationText;
@@ -20,6 +21,50 @@ public class Observation implements Serializable {
         this.comments = comments;
     }
 
+    // copy, so a shared (e.g. cached) observation can be edited without changing the original
+    public Observation(Observation other) {
+        this.id = other.id;
+        this.hikeId = other.hikeId;
+        this.observationText = other.observationText;
+        this.time = other.time;
+        this.comments = other.comments;
+    }
+
+    // Parcelable: fields are written and read back in declaration order
+    protected Observation(Parcel in) {
+        id = in.readInt();
+        hikeId = in.readInt();
+        observationText = in.readString();
+        time = in.readString();
+        comments = in.readString();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(id);
+        dest.writeInt(hikeId);
+        dest.writeString(observationText);
+        dest.writeString(time);
+        dest.writeString(comments);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<Observation> CREATOR = new Creator<Observation>() {
+        @Override
+        public Observation createFromParcel(Parcel in) {
+            return new Observation(in);
+        }
+
+        @Override
+        public Observation[] newArray(int size) {
+            return new Observation[size];
+        }
+    };
+
     // Getters and Setters
     public int getId() {
         return id;
@@ -0,0 +1,26 @@
+package com.example.mhike.models;
+
+public class ObservationSummary {
+    private final int hikeId;
+    private final int count;
+    private final String lastTime;
+
+    public ObservationSummary(int hikeId, int count, String lastTime) {
+        this.hikeId = hikeId;
+        this.count = count;
+        this.lastTime = lastTime;
+    }
+
+    public int getHikeId() {
+        return hikeId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // time text of the latest observation, null when there are none
+    public String getLastTime() {
+        return lastTime;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.mhike.database;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * BkTree lookups return exactly the words a brute-force scan finds within the radius.
+ */
+public class BkTreeTest {
+
+    @Test
+    public void findsEveryWordWithinTheRadius() {
+        Random random = new Random(42);
+        String[] words = new String[2000];
+        BkTree tree = new BkTree();
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomWord(random);
+            tree.add(words[i]);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            String query = q % 2 == 0 ? randomWord(random) : typo(words[random.nextInt(words.length)], random);
+            for (int radius = 0; radius <= 2; radius++) {
+                TreeMap<String, Integer> expected = new TreeMap<>();
+                for (String word : words) {
+                    int d = EditDistance.levenshtein(query, word);
+                    if (d <= radius) expected.put(word, d);
+                }
+                TreeMap<String, Integer> found = new TreeMap<>();
+                tree.search(query, radius, (word, distance) -> assertNull(word, found.put(word, distance)));
+                assertEquals(query + " within " + radius, expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void duplicatesAreStoredOnce() {
+        BkTree tree = new BkTree();
+        tree.add("scafell");
+        tree.add("scafell");
+        tree.add("scafel");
+        assertEquals(2, tree.size());
+
+        tree.clear();
+        assertEquals(0, tree.size());
+        tree.search("scafell", 2, (word, distance) -> fail("cleared tree returned " + word));
+    }
+
+    // short words over a small alphabet, so many of them are a typo or two apart
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) word.append((char) ('a' + random.nextInt(6)));
+        return word.toString();
+    }
+
+    private static String typo(String word, Random random) {
+        StringBuilder typo = new StringBuilder(word);
+        int at = random.nextInt(typo.length());
+        switch (random.nextInt(3)) {
+            case 0:
+                typo.setCharAt(at, (char) ('a' + random.nextInt(6)));
+                break;
+            case 1:
+                typo.insert(at, (char) ('a' + random.nextInt(6)));
+                break;
+            default:
+                typo.deleteCharAt(at);
+        }
+        return typo.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.mhike.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Levenshtein and bounded Damerau distances used by the typo-tolerant search.
+ */
+public class EditDistanceTest {
+
+    @Test
+    public void substitutionInsertionAndDeletionCostOne() {
+        assertEquals(1, EditDistance.levenshtein("hike", "bike"));
+        assertEquals(1, EditDistance.levenshtein("hike", "hikes"));
+        assertEquals(1, EditDistance.levenshtein("hikes", "hike"));
+        assertEquals(1, EditDistance.damerau("hike", "bike", 2));
+        assertEquals(1, EditDistance.damerau("hike", "hikes", 2));
+        assertEquals(1, EditDistance.damerau("hikes", "hike", 2));
+    }
+
+    @Test
+    public void identicalAndEmptyWords() {
+        assertEquals(0, EditDistance.levenshtein("snowdon", "snowdon"));
+        assertEquals(0, EditDistance.damerau("snowdon", "snowdon", 2));
+        assertEquals(4, EditDistance.levenshtein("", "peak"));
+        assertEquals(4, EditDistance.levenshtein("peak", ""));
+        assertEquals(0, EditDistance.levenshtein("", ""));
+    }
+
+    @Test
+    public void levenshteinOfTheClassicPair() {
+        assertEquals(3, EditDistance.levenshtein("kitten", "sitting"));
+        assertEquals(3, EditDistance.damerau("kitten", "sitting", 3));
+    }
+
+    @Test
+    public void transpositionCostsOneOnlyForDamerau() {
+        assertEquals(2, EditDistance.levenshtein("hike", "hkie"));
+        assertEquals(1, EditDistance.damerau("hike", "hkie", 2));
+        assertEquals(1, EditDistance.damerau("lake", "alke", 2));
+        // two separate swaps
+        assertEquals(2, EditDistance.damerau("ridge walk", "rdige wlak", 3));
+    }
+
+    @Test
+    public void boundedDistanceStopsAtMaxPlusOne() {
+        assertEquals(3, EditDistance.damerau("abcdefgh", "zzzzzzzz", 2));
+        assertEquals(2, EditDistance.damerau("kitten", "sitting", 1));
+        // the length difference alone rules it out
+        assertEquals(2, EditDistance.damerau("ben", "ben nevis", 1));
+        assertEquals(1, EditDistance.damerau("a", "b", 0));
+    }
+
+    @Test
+    public void boundedDistanceAgreesWithTheFullOneWithinTheBound() {
+        String[] words = {"helvellyn", "hellvelyn", "helvelyn", "skiddaw", "skidaw", "sikddaw", "catbells", "cat bells"};
+        for (String a : words) {
+            for (String b : words) {
+                int full = EditDistance.damerau(a, b, Integer.MAX_VALUE - 1);
+                for (int max = 0; max <= 3; max++) {
+                    assertEquals(a + "/" + b + " max " + max, Math.min(full, max + 1), EditDistance.damerau(a, b, max));
+                }
+                assertTrue(full <= EditDistance.levenshtein(a, b));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.mhike.database;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the backup's varint, zigzag, decimal and shared-string encodings.
+ */
+public class HikeBackupEncodingTest {
+
+    @Test
+    public void varintsRoundTripAndStayShort() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HikeBackup.Writer w = new HikeBackup.Writer(bytes);
+        for (long v : values) w.varint(v);
+
+        HikeBackup.Reader r = reader(bytes);
+        for (long v : values) assertEquals(v, r.varint());
+
+        assertEquals(1, encodedVarint(127));
+        assertEquals(2, encodedVarint(128));
+        assertEquals(3, encodedVarint(16384));
+        // -1 is all ones as an unsigned value: ten groups of seven bits
+        assertEquals(10, encodedVarint(-1));
+    }
+
+    @Test
+    public void zigzagKeepsSmallNegativesShort() throws IOException {
+        long[] values = {0, -1, 1, -64, 63, -65, Long.MIN_VALUE, Long.MAX_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HikeBackup.Writer w = new HikeBackup.Writer(bytes);
+        for (long v : values) w.signed(v);
+
+        HikeBackup.Reader r = reader(bytes);
+        for (long v : values) assertEquals(v, r.signed());
+
+        ByteArrayOutputStream one = new ByteArrayOutputStream();
+        new HikeBackup.Writer(one).signed(-64);
+        assertEquals(1, one.size());
+    }
+
+    @Test
+    public void decimalsRoundTripExactly() throws IOException {
+        double[] values = {0, 12.5, 0.01, 7.25, 1000000.99, 1.0 / 3, -2.5, Double.NaN, Double.MAX_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HikeBackup.Writer w = new HikeBackup.Writer(bytes);
+        for (double v : values) w.decimal(v);
+
+        HikeBackup.Reader r = reader(bytes);
+        for (double v : values) {
+            assertEquals(Double.doubleToLongBits(v), Double.doubleToLongBits(r.decimal()));
+        }
+    }
+
+    @Test
+    public void wholeHundredthsUseTheShortForm() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new HikeBackup.Writer(bytes).decimal(12.5);
+        // 1250 << 1 = 2500 fits two varint bytes, against nine for the raw double
+        assertEquals(2, bytes.size());
+    }
+
+    @Test
+    public void repeatedStringsAreSentOnce() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HikeBackup.Writer w = new HikeBackup.Writer(bytes);
+        w.string("Lake District");
+        int literal = bytes.size();
+        w.string("Lake District");
+        // the repeat is a one-byte reference to the first
+        assertEquals(literal + 1, bytes.size());
+        w.string(null);
+        w.string("");
+        w.string("Snowdon \u00e9\u00e8");
+
+        HikeBackup.Reader r = reader(bytes);
+        assertEquals("Lake District", r.string());
+        assertEquals("Lake District", r.string());
+        assertNull(r.string());
+        assertEquals("", r.string());
+        assertEquals("Snowdon \u00e9\u00e8", r.string());
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedVarintIsReported() throws IOException {
+        new HikeBackup.Reader(new ByteArrayInputStream(new byte[]{(byte) 0x80})).varint();
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownStringReferenceIsReported() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new HikeBackup.Writer(bytes).varint(5);
+        reader(bytes).string();
+    }
+
+    private static int encodedVarint(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new HikeBackup.Writer(bytes).varint(value);
+        return bytes.size();
+    }
+
+    private static HikeBackup.Reader reader(ByteArrayOutputStream bytes) {
+        return new HikeBackup.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}